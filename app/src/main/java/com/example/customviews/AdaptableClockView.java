@@ -4,17 +4,17 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.media.MediaPlayer;
 import android.support.annotation.ColorRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.example.customviews.core.ClockGrid;
+import com.example.customviews.core.Countdown;
+import com.example.customviews.core.SevenSegment;
 
 /**
  * Reloj de 24 segundos que soporta seteo de padding por XML
@@ -33,11 +33,15 @@ public class AdaptableClockView extends View implements IClockView{
     protected boolean showGrid = true;
 
     private int currentNumber = 24;
-    private float canvasSize;
-    private float cellSize;
-    private float nColumns;
-    private float horizontalOffset;
-    private float verticalOffset;
+    private final ClockGrid grid = new ClockGrid();
+    private SegmentGeometry geometry;
+    private int activeMask;
+    private int pathsWidth;
+    private int pathsHeight;
+    private int pathsPaddingLeft;
+    private int pathsPaddingTop;
+    private int pathsPaddingRight;
+    private int pathsPaddingBottom;
 
     /**
      * Se utiliza cuando se crean vistas manualmente, por código
@@ -68,6 +72,7 @@ public class AdaptableClockView extends View implements IClockView{
         activeTextPaint = createPaintFromResource(R.color.colorAccent);
         inactiveTextPaint = createPaintFromResource(R.color.colorInactive);
 
+        timer = new ClockTimer(this, currentNumber * Countdown.SECOND, display);
         if(!isInEditMode())
             start();
     }
@@ -81,7 +86,6 @@ public class AdaptableClockView extends View implements IClockView{
 
     //region //View overrides
 
-
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int resolvedWidth = resolveSize(defaultSize,widthMeasureSpec);
@@ -95,49 +99,63 @@ public class AdaptableClockView extends View implements IClockView{
         final int canvasWidth = canvas.getWidth();
         final int canvasHeight = canvas.getHeight();
 
-        setupGrid(canvasWidth,canvasHeight);
-
-        List<ClockPath> paths = initNumberPaths();
+        if(geometry == null
+                || canvasWidth != pathsWidth
+                || canvasHeight != pathsHeight
+                || getPaddingLeft() != pathsPaddingLeft
+                || getPaddingTop() != pathsPaddingTop
+                || getPaddingRight() != pathsPaddingRight
+                || getPaddingBottom() != pathsPaddingBottom) {
+            //solo se vuelve a calcular la geometria cuando cambia el tamaño o el padding
+            setupGrid(canvasWidth, canvasHeight);
+            geometry = SegmentGeometryCache.obtain(grid.getCanvasSize(), cellPadding,
+                    grid.getHorizontalOffset(), grid.getVerticalOffset());
+            pathsWidth = canvasWidth;
+            pathsHeight = canvasHeight;
+            pathsPaddingLeft = getPaddingLeft();
+            pathsPaddingTop = getPaddingTop();
+            pathsPaddingRight = getPaddingRight();
+            pathsPaddingBottom = getPaddingBottom();
+        }
 
-        updatePathsStatesForNumber(paths, currentNumber);
+        updatePathsStatesForNumber(currentNumber);
 
         canvas.drawRect(0,0,canvasWidth,canvasHeight,backgroundPaint);
+
         if(showGridBackground) {
             canvas.drawRect(
-                    horizontalOffset,
-                    verticalOffset,
-                    canvasSize + horizontalOffset,
-                    canvasSize + verticalOffset,
+                    grid.getHorizontalOffset(),
+                    grid.getVerticalOffset(),
+                    grid.getCanvasSize() + grid.getHorizontalOffset(),
+                    grid.getCanvasSize() + grid.getVerticalOffset(),
                     squarePaint);
         }
 
         if(showGrid)
             paintGrid(canvas);
 
-        for(ClockPath clockPath : paths){
-            Paint pathPaint = clockPath.isActive ? activeTextPaint : inactiveTextPaint;
-            canvas.drawPath(clockPath.path,pathPaint);
+        final Path[] paths = geometry.paths;
+        for(int i = 0; i < paths.length; i++){
+            Paint pathPaint = SevenSegment.isActive(activeMask, i) ? activeTextPaint : inactiveTextPaint;
+            canvas.drawPath(paths[i],pathPaint);
         }
     }
 
     /**
-     * Setea los valores necesarios para dibujar los numeros, en base al espacio disponible para dibujar
+     * Setea los valores necesarios para dibujar los numeros, en base al espacio disponible para
+     * dibujar, centrando la grilla
      * @param availableWidth ancho disponible para dibujar
      * @param availableHeight alto disponible para dibujar
      */
     private void setupGrid(float availableWidth, float availableHeight){
-        canvasSize = Math.min(
-                availableWidth - getPaddingLeft() - getPaddingRight(),
-                availableHeight - getPaddingTop() - getPaddingTop());
-        if(canvasSize < 0)
-            canvasSize = 0;
-        nColumns = 18 + (cellPadding * 2);
-        cellSize = canvasSize / nColumns * 1.0f;
-        horizontalOffset = getPaddingLeft() + (getMeasuredWidth() - canvasSize) / 2;
-        verticalOffset = getPaddingTop() + (getMeasuredHeight() - canvasSize) / 2;
+        grid.setup(availableWidth, availableHeight,
+                getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom(),
+                cellPadding);
     }
 
     private void paintGrid(Canvas canvas){
+        final float horizontalOffset = grid.getHorizontalOffset(), verticalOffset = grid.getVerticalOffset();
+        final float canvasSize = grid.getCanvasSize(), cellSize = grid.getCellSize();
         float w = horizontalOffset, h = verticalOffset;
         while (w < canvasSize + horizontalOffset){
             canvas.drawLine(w,verticalOffset,w,canvasSize + verticalOffset, gridPaint);
@@ -149,231 +167,89 @@ public class AdaptableClockView extends View implements IClockView{
         }
     }
 
-    private class ClockPath{
-        Path path;
-        boolean isActive;
-
-        ClockPath(Path path, boolean isActive) {
-            this.path = path;
-            this.isActive = isActive;
-        }
-    }
-
-    private class GridPoint{
-        int x, y;
-
-        GridPoint(int x, int y) {
-            this.x = x;
-            this.y = y;
-        }
-    }
-
-    /**
-     * Create paths that when together, allow us to represent a number
-     */
-    private @NonNull List<ClockPath> initNumberPaths(){
-        List<ClockPath> paths = new ArrayList<>();
-        int nDigits = 2;
-        for(int i=0; i < nDigits; i++){
-            int column = i * 10;
-            //A
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,3),
-                    new GridPoint(8,3),
-                    new GridPoint(6,5),
-                    new GridPoint(2,5)));
-            //B
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,3),
-                    new GridPoint(0,9),
-                    new GridPoint(2,8),
-                    new GridPoint(2,5)));
-            //C
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(8,3),
-                    new GridPoint(8,9),
-                    new GridPoint(6,8),
-                    new GridPoint(6,5)));
-            //D
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,9),
-                    new GridPoint(2,8),
-                    new GridPoint(6,8),
-                    new GridPoint(8,9),
-                    new GridPoint(6,10),
-                    new GridPoint(2,10)));
-            //E
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,9),
-                    new GridPoint(0,15),
-                    new GridPoint(2,13),
-                    new GridPoint(2,10)));
-            //F
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(8,9),
-                    new GridPoint(8,15),
-                    new GridPoint(6,13),
-                    new GridPoint(6,10)));
-            //G
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(8,15),
-                    new GridPoint(0,15),
-                    new GridPoint(2,13),
-                    new GridPoint(6,13)));
-        }
-
-        return paths;
-    }
-
     /**
-     * Crear un path con uno o mas puntos
-     * @param startingColumn columna en la que se comienza a dibujar el path
-     * @param cellSize el tamaño de una celda de la grilla
-     * @param startingPoint punto en el que se comienza a dibujar el path
-     * @param nextPoints los siguientes puntos sobre los cuales se dibujara el path
-     */
-    private ClockPath createPath(int startingColumn,
-                                 float cellSize,
-                                 GridPoint startingPoint,
-                                 GridPoint... nextPoints){
-        float offset = startingColumn * cellSize;
-        Path path = new Path();
-        path.moveTo(offset + (startingPoint.x + cellPadding) * cellSize + horizontalOffset,
-                (startingPoint.y + cellPadding) * cellSize + verticalOffset);
-
-        for(GridPoint point : nextPoints){
-            path.lineTo(offset + (point.x + cellPadding) * cellSize + horizontalOffset,
-                    (point.y + cellPadding)  * cellSize + verticalOffset);
-        }
-        return new ClockPath(path,false);
-    }
-
-
-    private final static int A = 0, B = 1, C = 2, D = 3, E = 4, F = 5, G = 6;
-    /**
-     * Actualiza el estado de cada path para que muestre el numero que se quiere mostrar
-     * @param paths sobre los cuales se aplicará el cambio de estado
+     * Actualiza el estado de los segmentos para que muestren el numero que se quiere mostrar
      * @param number Numero que se quiere mostrar
      */
-    private void updatePathsStatesForNumber(List<ClockPath> paths, int number){
-        if(number < 0 || number > 24)
+    private void updatePathsStatesForNumber(int number){
+        int mask = SevenSegment.maskForValue(number);
+        if(mask == SevenSegment.INVALID_MASK)
             return;
 
-        for (ClockPath path : paths){
-            path.isActive = false;
-        }
-
-        int digitIndex = 0;
-        do{
-            int digit = number % 10;
-            number /= 10;
-
-            switch (digit){
-                case 0:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,C,E,F,G);
-                    break;
-                case 1:
-                    updatePathsForSingleDigit(paths,digitIndex,C,F);
-                    break;
-                case 2:
-                    updatePathsForSingleDigit(paths,digitIndex,A,C,D,E,G);
-                    break;
-                case 3:
-                    updatePathsForSingleDigit(paths,digitIndex,A,C,D,F,G);
-                    break;
-                case 4:
-                    updatePathsForSingleDigit(paths,digitIndex,B,D,C,F);
-                    break;
-                case 5:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,D,F,G);
-                    break;
-                case 6:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,D,F,G,E);
-                    break;
-                case 7:
-                    updatePathsForSingleDigit(paths,digitIndex,A,C,F);
-                    break;
-                case 8:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,C,D,E,F,G);
-                    break;
-                case 9:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,C,D,F);
-                    break;
-                default:
-                    updatePathsForSingleDigit(paths,digitIndex);
-            }
-            digitIndex++;
-        }while (number > 0);
-
-    }
-
-    /**
-     * Actualiza el estado de cada path correspondiente a un solo digito. Asume que
-     * cada digito está conformado por 7 paths
-     * @param paths
-     * @param digitIndex Numero de digito empezando de la derecha. Por ejemplo, si el numero es "123",
-     *                   3 -> digitIndex: 0
-     *                   2 -> digitIndex: 1
-     *                   1 -> digitIndex: 2
-     * @param activeIndexes Indice de los paths que deberian estar activos
-     */
-    private void updatePathsForSingleDigit(List<ClockPath> paths, int digitIndex, int... activeIndexes){
-        //O(m * n)
-        int offset = paths.size() - (digitIndex + 1) * 7;
-        if(offset < 0)
-            return;
-        for(int i=0; i < 7; i++){
-            ClockPath path = paths.get(offset + i);
-            for(int active : activeIndexes){
-                if(i == active){
-                    path.isActive = true;
-                    break;
-                }
-                path.isActive = false;
-            }
-        }
+        activeMask = mask;
     }
 
     //endregion
 
     //region //Timer manager
 
+    private ClockTimer timer;
+
     @Override
     public void start() {
-        updateClock();
+        timer.start();
     }
 
     @Override
     public void stop() {
-        removeCallbacks(updateRunnable);
+        timer.stop();
     }
 
     @Override
     public void reset() {
-        currentNumber = 0;
+        timer.reset();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        timer.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        timer.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        //puede llamarse antes de que se cree el timer
+        if(timer != null)
+            timer.onVisibilityChanged();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if(timer != null)
+            timer.onVisibilityChanged();
     }
 
-    private Runnable updateRunnable = new Runnable() {
+    private final ClockTimer.Display display = new ClockTimer.Display() {
         @Override
-        public void run() {
-            updateClock();
+        public void showRemaining(long now, long remainingMillis, boolean fromTick) {
+            int previousNumber = currentNumber;
+            currentNumber = timer.getCountdown().displayedSeconds(now);
+            if(currentNumber != previousNumber)
+                invalidate();
         }
-    };
 
-    private void updateClock() {
-        if(currentNumber > 0) {
-            currentNumber--;
-            invalidate();
-
-            if(currentNumber != 0) {
-                //sigue actualizando
-                postDelayed(updateRunnable, 1000L);
-            }else{
-                //suena la vocina
-                MediaPlayer mp = MediaPlayer.create(getContext(), R.raw.buzzer);
-                mp.start();
-            }
+        @Override
+        public long nextTickTime(long now) {
+            //sigue actualizando justo cuando cambia el segundo
+            return timer.getCountdown().nextChangeTime(now);
         }
+    };
+
+    /**
+     * Actualiza el numero que se muestra
+     * @return instante en el que se debe volver a actualizar, o {@link ClockTicker#NO_DEADLINE}
+     */
+    @VisibleForTesting
+    long updateClock(long now) {
+        return timer.update(now, true);
     }
 
     //endregion
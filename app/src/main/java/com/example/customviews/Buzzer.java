@@ -0,0 +1,148 @@
+package com.example.customviews;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.support.annotation.VisibleForTesting;
+
+/**
+ * Bocina compartida por todos los relojes.
+ * El sonido se decodifica una sola vez en un {@link SoundPool} cuando se engancha el primer reloj,
+ * de forma que al llegar a cero solo hay que reproducir un buffer que ya esta en memoria. Cada
+ * reloj pide la bocina con {@link #acquire(Context)} cuando se engancha a la ventana y la devuelve
+ * con {@link #release()} cuando se desengancha; cuando se devuelve la ultima, se libera el SoundPool.
+ *
+ * {@link #play(long)} se puede llamar desde cualquier hilo, por ejemplo desde el hilo de render de
+ * {@link SurfaceClockView}, para que la bocina no espere a un hilo principal bloqueado: SoundPool es
+ * thread-safe, y el estado de la bocina se protege con la propia instancia.
+ */
+@UiThread
+final class Buzzer implements SoundPool.OnLoadCompleteListener {
+
+    private static final int MAX_STREAMS = 4;
+    private static final long NOT_PENDING = -1;
+    /**
+     * Retraso maximo con el que todavia suena la bocina. Un reloj que llego a cero mientras no
+     * estaba en una ventana se pone al dia al volver, pero ya no suena
+     */
+    static final long MAX_LATENESS_MILLIS = 1000;
+
+    private static Buzzer instance;
+    private static volatile long lastLatencyMillis = -1;
+
+    private final SoundPool soundPool;
+    private final int soundId;
+    private int references;
+    private boolean loaded;
+    private long pendingExpiredAt = NOT_PENDING;
+
+    private Buzzer(Context context) {
+        soundPool = createSoundPool();
+        soundPool.setOnLoadCompleteListener(this);
+        soundId = soundPool.load(context.getApplicationContext(), R.raw.buzzer, 1);
+    }
+
+    /**
+     * Devuelve la bocina compartida, cargando el sonido si es el primer reloj que la pide
+     */
+    static @NonNull Buzzer acquire(Context context){
+        if(instance == null)
+            instance = new Buzzer(context);
+        synchronized (instance) {
+            instance.references++;
+        }
+        return instance;
+    }
+
+    /**
+     * Devuelve la bocina. Cuando ningun reloj la esta usando se libera el sonido
+     */
+    synchronized void release(){
+        if(references == 0)
+            return;
+        references--;
+        if(references == 0) {
+            soundPool.release();
+            if(instance == this)
+                instance = null;
+        }
+    }
+
+    /**
+     * Hace sonar la bocina. Si el sonido todavia no termino de cargar, suena apenas este listo
+     * @param expiredAt instante en el que el reloj llego a cero, segun
+     *                  {@link SystemClock#uptimeMillis()}. Se usa para medir la latencia, y si
+     *                  pasaron mas de {@link #MAX_LATENESS_MILLIS} no suena
+     */
+    @AnyThread
+    synchronized void play(long expiredAt){
+        if(references == 0 || SystemClock.uptimeMillis() - expiredAt > MAX_LATENESS_MILLIS)
+            return;
+        if(!loaded) {
+            pendingExpiredAt = expiredAt;
+            return;
+        }
+        playLoaded(expiredAt);
+    }
+
+    private void playLoaded(long expiredAt){
+        soundPool.play(soundId, 1f, 1f, 1, 0, 1f);
+        lastLatencyMillis = SystemClock.uptimeMillis() - expiredAt;
+    }
+
+    /**
+     * @return milisegundos entre que el ultimo reloj llego a cero y se inicio la reproduccion de la
+     * bocina, o -1 si todavia no sono. Mide hasta que el sonido se entrega al SoundPool; no incluye
+     * la latencia de salida del hardware de audio
+     */
+    static long getLastLatencyMillis(){
+        return lastLatencyMillis;
+    }
+
+    @Override
+    public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+        if(sampleId == soundId && status == 0)
+            onSoundLoaded();
+    }
+
+    /**
+     * Marca el sonido como cargado, y lo hace sonar si un reloj llego a cero mientras cargaba
+     */
+    @VisibleForTesting
+    synchronized void onSoundLoaded(){
+        if(references == 0)
+            return;
+        loaded = true;
+        if(pendingExpiredAt != NOT_PENDING) {
+            long expiredAt = pendingExpiredAt;
+            pendingExpiredAt = NOT_PENDING;
+            playLoaded(expiredAt);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static SoundPool createSoundPool(){
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+            return createSoundPoolApi21();
+        return new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static SoundPool createSoundPoolApi21(){
+        AudioAttributes attributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_GAME)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build();
+        return new SoundPool.Builder()
+                .setMaxStreams(MAX_STREAMS)
+                .setAudioAttributes(attributes)
+                .build();
+    }
+}
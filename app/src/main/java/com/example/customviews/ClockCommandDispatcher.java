@@ -0,0 +1,69 @@
+package com.example.customviews;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+
+import com.example.customviews.core.ClockCommand;
+import com.example.customviews.core.ClockCommandFeed;
+import com.example.customviews.core.CommandCoalescer;
+
+/**
+ * Conecta un {@link ClockCommandFeed} con los relojes de la pantalla, por ejemplo un
+ * {@link ClockWallView}. El hilo de lectura deja los comandos en un {@link CommandCoalescer}, y
+ * este dispatcher los aplica en el hilo principal una vez por frame (ver {@link FrameDrain}), asi
+ * que aunque lleguen miles de comandos por segundo cada reloj cambia a lo sumo una vez por frame y
+ * la cola del looper principal recibe un solo mensaje por frame.
+ */
+public final class ClockCommandDispatcher implements ClockCommandFeed.Listener {
+
+    private final ClockCommand.Target target;
+    private final CommandCoalescer coalescer;
+    private final ClockCommandFeed feed;
+    private final FrameDrain frameDrain = new FrameDrain(new Runnable() {
+        @Override
+        public void run() {
+            coalescer.drain(target);
+        }
+    });
+
+    /**
+     * @param source de donde se leen los comandos, ver {@link ClockCommandFeed#tcp(String, int)}
+     * @param target relojes a los que se aplican; los ids que no existen se descartan
+     */
+    public ClockCommandDispatcher(@NonNull ClockCommandFeed.Source source, @NonNull ClockCommand.Target target) {
+        this.target = target;
+        this.coalescer = new CommandCoalescer(target.getClockCount());
+        this.feed = new ClockCommandFeed(source, coalescer, this);
+    }
+
+    /**
+     * Empieza a leer comandos, por ejemplo en onStart de la actividad
+     */
+    @UiThread
+    public void start(){
+        feed.start();
+    }
+
+    /**
+     * Deja de leer comandos, por ejemplo en onStop de la actividad. Los que ya llegaron se aplican
+     * en el momento, para que el coalescer quede vacio y el siguiente comando vuelva a pedir un frame
+     */
+    @UiThread
+    public void stop(){
+        feed.stop();
+        frameDrain.runNow();
+    }
+
+    /**
+     * @return comandos recibidos, incluyendo los que se combinaron con otros
+     */
+    public long getReceivedCount(){
+        return coalescer.getReceivedCount();
+    }
+
+    @Override
+    public void onCommandsPending() {
+        //se llama desde el hilo de lectura, una vez por cada frame con comandos
+        frameDrain.request();
+    }
+}
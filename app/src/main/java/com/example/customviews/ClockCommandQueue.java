@@ -0,0 +1,132 @@
+package com.example.customviews;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.support.annotation.WorkerThread;
+
+import com.example.customviews.core.ClockCommand;
+import com.example.customviews.core.CommandCoalescer;
+import com.example.customviews.core.CommandRingBuffer;
+
+/**
+ * Permite controlar relojes desde un hilo que no es el principal, por ejemplo el de un control
+ * remoto por Bluetooth o un sensor. Los relojes no son thread-safe, asi que en lugar de llamarlos
+ * directamente, el hilo productor deja cada comando empaquetado en un {@link CommandRingBuffer},
+ * sin locks ni objetos por comando, y el hilo principal vacia la cola una vez por frame (ver
+ * {@link FrameDrain}), combinando los comandos de cada reloj con un {@link CommandCoalescer}.
+ *
+ * Admite un solo hilo productor; para varios se usa una cola por productor.
+ */
+public final class ClockCommandQueue {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final ClockCommand.Target target;
+    private final CommandRingBuffer ring;
+    private final CommandCoalescer coalescer;
+    private final FrameDrain frameDrain = new FrameDrain(new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    });
+    private final CommandRingBuffer.Consumer toCoalescer = new CommandRingBuffer.Consumer() {
+        @Override
+        public void accept(long command) {
+            coalescer.post(ClockCommand.opcodeOf(command),
+                    ClockCommand.clockIdOf(command),
+                    ClockCommand.valueOf(command));
+        }
+    };
+
+    public ClockCommandQueue(@NonNull ClockCommand.Target target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity comandos que entran en la cola entre un frame y el siguiente
+     */
+    public ClockCommandQueue(@NonNull ClockCommand.Target target, int capacity) {
+        this.target = target;
+        this.ring = new CommandRingBuffer(capacity);
+        this.coalescer = new CommandCoalescer(target.getClockCount());
+    }
+
+    /**
+     * @return una cola para vistas de un solo reloj; el id de cada reloj es su posicion. Como
+     * {@link IClockView} no permite cambiar la duracion, {@link ClockCommand#SET_VALUE} se ignora
+     */
+    public static @NonNull ClockCommandQueue forViews(@NonNull final IClockView... views){
+        return new ClockCommandQueue(new ClockCommand.Target() {
+            @Override
+            public int getClockCount() {
+                return views.length;
+            }
+
+            @Override
+            public void start(int clockId) {
+                views[clockId].start();
+            }
+
+            @Override
+            public void stop(int clockId) {
+                views[clockId].stop();
+            }
+
+            @Override
+            public void reset(int clockId) {
+                views[clockId].reset();
+            }
+
+            @Override
+            public void setDurationMillis(int clockId, long durationMillis) {
+            }
+        });
+    }
+
+    @WorkerThread
+    public boolean start(int clockId){
+        return offer(ClockCommand.START, clockId, 0);
+    }
+
+    @WorkerThread
+    public boolean stop(int clockId){
+        return offer(ClockCommand.STOP, clockId, 0);
+    }
+
+    @WorkerThread
+    public boolean reset(int clockId){
+        return offer(ClockCommand.RESET, clockId, 0);
+    }
+
+    @WorkerThread
+    public boolean setDurationMillis(int clockId, long durationMillis){
+        return offer(ClockCommand.SET_VALUE, clockId, durationMillis);
+    }
+
+    /**
+     * Encola un comando para el siguiente frame. Solo se llama desde el hilo productor: la cola
+     * admite uno solo, y dos hilos que encolan a la vez la corrompen
+     * @return false si la cola esta llena y el comando se descarto
+     */
+    @WorkerThread
+    public boolean offer(int opcode, int clockId, long value){
+        if(!ring.offer(ClockCommand.pack(opcode, clockId, value)))
+            return false;
+        frameDrain.request();
+        return true;
+    }
+
+    /**
+     * Aplica en el momento los comandos encolados, sin esperar al siguiente frame
+     */
+    @UiThread
+    public void flush(){
+        frameDrain.runNow();
+    }
+
+    private void drain(){
+        ring.drain(toCoalescer);
+        coalescer.drain(target);
+    }
+}
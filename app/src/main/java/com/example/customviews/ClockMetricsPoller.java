@@ -0,0 +1,48 @@
+package com.example.customviews;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.customviews.core.ClockMetrics;
+
+/**
+ * Recorre una jerarquia de vistas y entrega las metricas de cada {@link OptimizedClockView} que
+ * las tenga activas, para que una herramienta externa pueda leer todos los relojes de una pantalla
+ */
+@UiThread
+public final class ClockMetricsPoller {
+
+    public interface Listener {
+        void onMetrics(@NonNull OptimizedClockView clock, @NonNull ClockMetrics.Snapshot snapshot);
+    }
+
+    private ClockMetricsPoller() {
+    }
+
+    /**
+     * @param root vista desde la que se buscan relojes, incluida
+     * @param reset true para vaciar las metricas de cada reloj despues de leerlas, de forma que
+     *              cada lectura cubra solo el intervalo desde la anterior
+     * @return cantidad de relojes con metricas activas
+     */
+    public static int poll(@NonNull View root, boolean reset, @NonNull Listener listener){
+        if(root instanceof OptimizedClockView) {
+            OptimizedClockView clock = (OptimizedClockView) root;
+            ClockMetrics metrics = clock.getMetrics();
+            if(metrics == null)
+                return 0;
+            listener.onMetrics(clock, reset ? metrics.snapshotAndReset() : metrics.snapshot());
+            return 1;
+        }
+        int count = 0;
+        if(root instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) root;
+            for(int i = 0; i < group.getChildCount(); i++){
+                count += poll(group.getChildAt(i), reset, listener);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.customviews;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.v4.content.ContextCompat;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Los Paints con los que se dibuja un reloj: fondo, cuadrado, grilla y segmentos activos e
+ * inactivos. Se crean una sola vez por combinacion de colores y se comparten entre todos los
+ * relojes que la usan (ver {@link #of(int, int, int, int, int)}), asi que cambiar de paleta solo
+ * cambia referencias y no crea Paints.
+ *
+ * Como son compartidos, los Paints no se deben modificar. Las paletas se guardan con referencias
+ * debiles, asi que una combinacion que ya no usa ningun reloj se libera.
+ */
+public final class ClockPalette {
+
+    private static final WeakHashMap<ClockPalette, WeakReference<ClockPalette>> interned = new WeakHashMap<>();
+
+    @ColorInt public final int backgroundColor;
+    @ColorInt public final int activeTextColor;
+    @ColorInt public final int inactiveTextColor;
+    @ColorInt public final int squareColor;
+    @ColorInt public final int gridColor;
+
+    final Paint background;
+    final Paint activeText;
+    final Paint inactiveText;
+    final Paint square;
+    final Paint grid;
+
+    private ClockPalette(int backgroundColor, int activeTextColor, int inactiveTextColor, int squareColor, int gridColor, boolean createPaints) {
+        this.backgroundColor = backgroundColor;
+        this.activeTextColor = activeTextColor;
+        this.inactiveTextColor = inactiveTextColor;
+        this.squareColor = squareColor;
+        this.gridColor = gridColor;
+        this.background = createPaints ? createPaint(backgroundColor) : null;
+        this.activeText = createPaints ? createPaint(activeTextColor) : null;
+        this.inactiveText = createPaints ? createPaint(inactiveTextColor) : null;
+        this.square = createPaints ? createPaint(squareColor) : null;
+        this.grid = createPaints ? createPaint(gridColor) : null;
+    }
+
+    /**
+     * @return la paleta con esos colores; si ya existe, la misma instancia
+     */
+    public static @NonNull ClockPalette of(@ColorInt int backgroundColor,
+                                           @ColorInt int activeTextColor,
+                                           @ColorInt int inactiveTextColor,
+                                           @ColorInt int squareColor,
+                                           @ColorInt int gridColor){
+        ClockPalette key = new ClockPalette(backgroundColor, activeTextColor, inactiveTextColor,
+                squareColor, gridColor, false);
+        synchronized (interned) {
+            WeakReference<ClockPalette> existing = interned.get(key);
+            ClockPalette palette = existing != null ? existing.get() : null;
+            if(palette == null) {
+                palette = new ClockPalette(backgroundColor, activeTextColor, inactiveTextColor,
+                        squareColor, gridColor, true);
+                interned.put(palette, new WeakReference<>(palette));
+            }
+            return palette;
+        }
+    }
+
+    /**
+     * @return la paleta con los colores de un estilo
+     */
+    public static @NonNull ClockPalette of(@NonNull ClockStyle style){
+        return of(style.backgroundColor, style.activeTextColor, style.inactiveTextColor,
+                style.squareColor, style.gridColor);
+    }
+
+    /**
+     * @return paleta de advertencia, con los colores {@code colorWarning} y
+     * {@code colorWarningBackground}, por ejemplo para los ultimos segundos
+     */
+    public static @NonNull ClockPalette warning(@NonNull Context context){
+        int background = ContextCompat.getColor(context, R.color.colorWarningBackground);
+        return of(background,
+                ContextCompat.getColor(context, R.color.colorWarning),
+                ContextCompat.getColor(context, R.color.colorInactive),
+                background,
+                ContextCompat.getColor(context, R.color.colorWarning));
+    }
+
+    private static Paint createPaint(int color){
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        return paint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof ClockPalette))
+            return false;
+        ClockPalette other = (ClockPalette) o;
+        return backgroundColor == other.backgroundColor
+                && activeTextColor == other.activeTextColor
+                && inactiveTextColor == other.inactiveTextColor
+                && squareColor == other.squareColor
+                && gridColor == other.gridColor;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = backgroundColor;
+        result = 31 * result + activeTextColor;
+        result = 31 * result + inactiveTextColor;
+        result = 31 * result + squareColor;
+        result = 31 * result + gridColor;
+        return result;
+    }
+}
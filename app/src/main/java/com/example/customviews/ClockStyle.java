@@ -0,0 +1,307 @@
+package com.example.customviews;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+
+import com.example.customviews.core.ClockFormat;
+import com.example.customviews.core.Countdown;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Aspecto y configuracion inicial de un {@link OptimizedClockView}: colores, grilla, separacion
+ * de los segmentos, formato, valor inicial, decimas, modo de dibujo y fundido. Es inmutable y se
+ * interna (ver {@link Builder#build()}), asi que todos los relojes con los mismos atributos
+ * comparten una sola instancia, y el reloj se inicializa una sola vez a partir de ella.
+ *
+ * El internado guarda referencias debiles: un estilo que ya no usa ningun reloj se libera, asi
+ * que crear muchos estilos distintos (por ejemplo uno por color) no los acumula.
+ */
+public final class ClockStyle {
+
+    /**
+     * Cada estilo apunta a si mismo con una referencia debil, para que ni la clave ni el valor lo
+     * mantengan vivo
+     */
+    private static final WeakHashMap<ClockStyle, WeakReference<ClockStyle>> interned = new WeakHashMap<>();
+
+    @ColorInt public final int backgroundColor;
+    @ColorInt public final int activeTextColor;
+    @ColorInt public final int inactiveTextColor;
+    @ColorInt public final int squareColor;
+    @ColorInt public final int gridColor;
+    public final boolean showGrid;
+    public final boolean showSquare;
+    /**
+     * Celdas de la grilla entre los segmentos de cada digito
+     * (ver {@link com.example.customviews.core.ClockGrid})
+     */
+    public final int cellPadding;
+    public final ClockFormat format;
+    /**
+     * Tiempo con el que empieza el reloj
+     */
+    public final long defaultMillis;
+    /**
+     * Tiempo restante por debajo del cual se muestran decimas, o 0 para no mostrarlas
+     */
+    public final long tenthsThresholdMillis;
+    public final ClockFormat tenthsFormat;
+    @OptimizedClockView.RenderMode
+    public final int renderMode;
+    public final boolean staticLayer;
+    /**
+     * Duracion del fundido de los segmentos que cambian, o 0 para que cambien de golpe
+     */
+    public final long transitionMillis;
+
+    private ClockStyle(Builder builder) {
+        backgroundColor = builder.backgroundColor;
+        activeTextColor = builder.activeTextColor;
+        inactiveTextColor = builder.inactiveTextColor;
+        squareColor = builder.squareColor;
+        gridColor = builder.gridColor;
+        showGrid = builder.showGrid;
+        showSquare = builder.showSquare;
+        cellPadding = builder.cellPadding;
+        format = builder.format;
+        defaultMillis = builder.defaultMillis;
+        tenthsThresholdMillis = builder.tenthsThresholdMillis;
+        tenthsFormat = builder.tenthsFormat;
+        renderMode = builder.renderMode;
+        staticLayer = builder.staticLayer;
+        transitionMillis = builder.transitionMillis;
+    }
+
+    /**
+     * @return el estilo de un reloj sin atributos: los colores del tema, con grilla y cuadrado
+     */
+    public static @NonNull ClockStyle defaults(@NonNull Context context){
+        return new Builder(context).build();
+    }
+
+    /**
+     * Lee los atributos de {@code R.styleable.clock_view}. Los valores que no son validos para el
+     * formato (un valor inicial mayor al maximo, un formato de decimas mas ancho) se ignoran
+     * @param attrs atributos del XML, o null para usar {@link #defaults(Context)}
+     */
+    public static @NonNull ClockStyle fromAttributes(@NonNull Context context, @Nullable AttributeSet attrs){
+        if(attrs == null)
+            return defaults(context);
+
+        Builder builder = new Builder(context);
+        TypedArray a = context.getTheme().obtainStyledAttributes(
+                attrs,
+                R.styleable.clock_view,
+                0, 0);
+        try {
+            builder.backgroundColor = a.getColor(R.styleable.clock_view_background_color, builder.backgroundColor);
+            builder.activeTextColor = a.getColor(R.styleable.clock_view_active_text_color, builder.activeTextColor);
+            builder.inactiveTextColor = a.getColor(R.styleable.clock_view_inactive_text_color, builder.inactiveTextColor);
+            builder.showGrid = a.getBoolean(R.styleable.clock_view_show_grid, false);
+            builder.showSquare = a.getBoolean(R.styleable.clock_view_show_square, false);
+            builder.cellPadding = Math.max(0, a.getInt(R.styleable.clock_view_cell_padding, 0));
+            String format = a.getString(R.styleable.clock_view_clock_format);
+            if(format != null)
+                builder.format = ClockFormat.of(format);
+            //el valor inicial se escribe en segundos
+            int defaultNumber = a.getInt(R.styleable.clock_view_default_value, 24);
+            long defaultMillis = defaultNumber * Countdown.SECOND;
+            if(defaultNumber >= 0 && defaultMillis <= builder.format.getMaxMillis())
+                builder.defaultMillis = defaultMillis;
+            //las decimas se escriben en milisegundos
+            int tenthsThreshold = a.getInt(R.styleable.clock_view_tenths_threshold, 0);
+            if(tenthsThreshold > 0 && builder.tenthsFormat.getColumns() <= builder.format.getColumns())
+                builder.tenthsThresholdMillis = tenthsThreshold;
+            builder.renderMode = a.getInt(R.styleable.clock_view_render_mode, OptimizedClockView.RENDER_SEGMENTS);
+            builder.staticLayer = a.getBoolean(R.styleable.clock_view_static_layer, false);
+            builder.transitionMillis = Math.max(0, a.getInt(R.styleable.clock_view_transition_duration, 0));
+        } finally {
+            a.recycle();
+        }
+        return builder.build();
+    }
+
+    public @NonNull Builder buildUpon(){
+        return new Builder(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof ClockStyle))
+            return false;
+        ClockStyle other = (ClockStyle) o;
+        return backgroundColor == other.backgroundColor
+                && activeTextColor == other.activeTextColor
+                && inactiveTextColor == other.inactiveTextColor
+                && squareColor == other.squareColor
+                && gridColor == other.gridColor
+                && showGrid == other.showGrid
+                && showSquare == other.showSquare
+                && cellPadding == other.cellPadding
+                && format == other.format
+                && defaultMillis == other.defaultMillis
+                && tenthsThresholdMillis == other.tenthsThresholdMillis
+                && tenthsFormat == other.tenthsFormat
+                && renderMode == other.renderMode
+                && staticLayer == other.staticLayer
+                && transitionMillis == other.transitionMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = backgroundColor;
+        result = 31 * result + activeTextColor;
+        result = 31 * result + inactiveTextColor;
+        result = 31 * result + squareColor;
+        result = 31 * result + gridColor;
+        result = 31 * result + (showGrid ? 1 : 0);
+        result = 31 * result + (showSquare ? 1 : 0);
+        result = 31 * result + cellPadding;
+        result = 31 * result + format.hashCode();
+        result = 31 * result + (int) (defaultMillis ^ (defaultMillis >>> 32));
+        result = 31 * result + (int) (tenthsThresholdMillis ^ (tenthsThresholdMillis >>> 32));
+        result = 31 * result + tenthsFormat.hashCode();
+        result = 31 * result + renderMode;
+        result = 31 * result + (staticLayer ? 1 : 0);
+        result = 31 * result + (int) (transitionMillis ^ (transitionMillis >>> 32));
+        return result;
+    }
+
+    public static final class Builder {
+        private int backgroundColor;
+        private int activeTextColor;
+        private int inactiveTextColor;
+        private int squareColor;
+        private int gridColor;
+        private boolean showGrid = true;
+        private boolean showSquare = true;
+        private int cellPadding = 0;
+        private ClockFormat format = ClockFormat.SECONDS;
+        private long defaultMillis = 24 * Countdown.SECOND;
+        private long tenthsThresholdMillis = 0;
+        private ClockFormat tenthsFormat = ClockFormat.SECOND_TENTHS;
+        private int renderMode = OptimizedClockView.RENDER_SEGMENTS;
+        private boolean staticLayer = false;
+        private long transitionMillis = 0;
+
+        /**
+         * Empieza con los valores de {@link #defaults(Context)}
+         */
+        public Builder(@NonNull Context context) {
+            backgroundColor = ContextCompat.getColor(context, R.color.colorPrimary);
+            activeTextColor = ContextCompat.getColor(context, R.color.colorAccent);
+            inactiveTextColor = ContextCompat.getColor(context, R.color.colorInactive);
+            squareColor = ContextCompat.getColor(context, R.color.green);
+            gridColor = ContextCompat.getColor(context, R.color.blue);
+        }
+
+        private Builder(ClockStyle style) {
+            backgroundColor = style.backgroundColor;
+            activeTextColor = style.activeTextColor;
+            inactiveTextColor = style.inactiveTextColor;
+            squareColor = style.squareColor;
+            gridColor = style.gridColor;
+            showGrid = style.showGrid;
+            showSquare = style.showSquare;
+            cellPadding = style.cellPadding;
+            format = style.format;
+            defaultMillis = style.defaultMillis;
+            tenthsThresholdMillis = style.tenthsThresholdMillis;
+            tenthsFormat = style.tenthsFormat;
+            renderMode = style.renderMode;
+            staticLayer = style.staticLayer;
+            transitionMillis = style.transitionMillis;
+        }
+
+        public Builder backgroundColor(@ColorInt int color){
+            backgroundColor = color;
+            return this;
+        }
+
+        public Builder activeTextColor(@ColorInt int color){
+            activeTextColor = color;
+            return this;
+        }
+
+        public Builder inactiveTextColor(@ColorInt int color){
+            inactiveTextColor = color;
+            return this;
+        }
+
+        public Builder showGrid(boolean show){
+            showGrid = show;
+            return this;
+        }
+
+        public Builder showSquare(boolean show){
+            showSquare = show;
+            return this;
+        }
+
+        public Builder cellPadding(int cellPadding){
+            this.cellPadding = Math.max(0, cellPadding);
+            return this;
+        }
+
+        public Builder format(@NonNull ClockFormat format){
+            this.format = format;
+            return this;
+        }
+
+        public Builder defaultMillis(long millis){
+            defaultMillis = millis;
+            return this;
+        }
+
+        public Builder tenths(long thresholdMillis, @NonNull ClockFormat tenthsFormat){
+            tenthsThresholdMillis = Math.max(0, thresholdMillis);
+            this.tenthsFormat = tenthsFormat;
+            return this;
+        }
+
+        public Builder renderMode(@OptimizedClockView.RenderMode int renderMode){
+            this.renderMode = renderMode;
+            return this;
+        }
+
+        public Builder staticLayer(boolean enabled){
+            staticLayer = enabled;
+            return this;
+        }
+
+        public Builder transitionMillis(long millis){
+            transitionMillis = Math.max(0, millis);
+            return this;
+        }
+
+        /**
+         * @return el estilo internado: si ya existe uno igual, se devuelve esa instancia
+         * @throws IllegalArgumentException si el valor inicial no entra en el formato, o si el
+         * formato de decimas es mas ancho
+         */
+        public @NonNull ClockStyle build(){
+            if(defaultMillis < 0 || defaultMillis > format.getMaxMillis())
+                throw new IllegalArgumentException("defaultMillis out of range for " + format + ": " + defaultMillis);
+            if(tenthsFormat.getColumns() > format.getColumns())
+                throw new IllegalArgumentException("The tenths format " + tenthsFormat + " is wider than " + format);
+            ClockStyle style = new ClockStyle(this);
+            synchronized (interned) {
+                WeakReference<ClockStyle> existing = interned.get(style);
+                ClockStyle internedStyle = existing != null ? existing.get() : null;
+                if(internedStyle != null)
+                    return internedStyle;
+                interned.put(style, new WeakReference<>(style));
+                return style;
+            }
+        }
+    }
+}
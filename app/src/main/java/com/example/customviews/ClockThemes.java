@@ -0,0 +1,97 @@
+package com.example.customviews;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Registro de temas compartido por todos los relojes del proceso. Un tema es una
+ * {@link ClockPalette} que, mientras esta activo, reemplaza la paleta propia de cada reloj.
+ *
+ * Cambiar de tema solo cambia una referencia: los relojes que estan en pantalla se enteran en el
+ * siguiente frame, con una sola invalidacion cada uno aunque el tema cambie varias veces en el
+ * mismo frame. Todos los metodos se deben llamar desde el hilo principal.
+ */
+@UiThread
+public final class ClockThemes {
+
+    interface Listener {
+        /**
+         * El tema activo cambio; se debe volver a elegir la paleta e invalidar
+         */
+        void onThemeChanged();
+    }
+
+    private static final HashMap<String, ClockPalette> themes = new HashMap<>();
+    private static final ArrayList<Listener> listeners = new ArrayList<>();
+    private static ClockPalette current;
+    private static final FrameDrain notifyListeners = new FrameDrain(new Runnable() {
+        @Override
+        public void run() {
+            for(int i = 0, size = listeners.size(); i < size; i++){
+                listeners.get(i).onThemeChanged();
+            }
+        }
+    });
+
+    private ClockThemes() {
+    }
+
+    /**
+     * Registra una paleta con un nombre, para activarla despues con {@link #setTheme(String)}
+     */
+    public static void register(@NonNull String name, @NonNull ClockPalette palette){
+        themes.put(name, palette);
+    }
+
+    public static @Nullable ClockPalette get(@NonNull String name){
+        return themes.get(name);
+    }
+
+    /**
+     * Activa un tema registrado
+     * @param name nombre del tema, o null para que cada reloj vuelva a su propia paleta
+     */
+    public static void setTheme(@Nullable String name){
+        ClockPalette palette = null;
+        if(name != null) {
+            palette = themes.get(name);
+            if(palette == null)
+                throw new IllegalArgumentException("Unknown theme: " + name);
+        }
+        setTheme(palette);
+    }
+
+    /**
+     * Activa una paleta en todos los relojes
+     * @param palette paleta, o null para que cada reloj vuelva a su propia paleta
+     */
+    public static void setTheme(@Nullable ClockPalette palette){
+        if(palette == current)
+            return;
+        current = palette;
+        notifyListeners.request();
+    }
+
+    /**
+     * @return paleta del tema activo, o null si cada reloj usa la suya
+     */
+    public static @Nullable ClockPalette getTheme(){
+        return current;
+    }
+
+    /**
+     * Los relojes se registran mientras estan en una ventana
+     */
+    static void addListener(@NonNull Listener listener){
+        if(!listeners.contains(listener))
+            listeners.add(listener);
+    }
+
+    static void removeListener(@NonNull Listener listener){
+        listeners.remove(listener);
+    }
+}
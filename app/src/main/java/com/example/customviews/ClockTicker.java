@@ -0,0 +1,188 @@
+package com.example.customviews;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Driver de ticks compartido por todos los relojes del proceso.
+ * En lugar de que cada reloj programe su propio Runnable, cada uno registra el instante de su
+ * siguiente tick y el driver mantiene un solo mensaje en el looper principal, programado para el
+ * deadline mas cercano. Cuando ese mensaje se ejecuta, se hace una sola pasada por la tabla y se
+ * notifica a todos los relojes cuyo deadline ya llego.
+ *
+ * Los relojes se guardan con referencias debiles, de forma que un reloj que ya no existe se
+ * elimina solo en la siguiente pasada. Todos los metodos se deben llamar desde el hilo principal.
+ */
+@UiThread
+final class ClockTicker implements Handler.Callback {
+
+    /**
+     * Valor que devuelve un {@link Callback} cuando no necesita mas ticks
+     */
+    static final long NO_DEADLINE = -1;
+
+    interface Callback {
+        /**
+         * @param now tiempo actual, segun {@link SystemClock#uptimeMillis()}
+         * @return instante del siguiente tick, o {@link #NO_DEADLINE} para dejar de recibir ticks
+         */
+        long onTick(long now);
+    }
+
+    private static final int MSG_TICK = 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static ClockTicker instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper(), this);
+
+    @SuppressWarnings("unchecked")
+    private WeakReference<Callback>[] callbacks = new WeakReference[INITIAL_CAPACITY];
+    private long[] deadlines = new long[INITIAL_CAPACITY];
+    private int count;
+    private long scheduledDeadline = NO_DEADLINE;
+    private boolean dispatching;
+
+    private ClockTicker() {
+    }
+
+    static @NonNull ClockTicker getInstance(){
+        if(instance == null)
+            instance = new ClockTicker();
+        return instance;
+    }
+
+    /**
+     * Registra un reloj, o actualiza su deadline si ya estaba registrado
+     * @param deadline instante del siguiente tick, o {@link #NO_DEADLINE} para eliminarlo
+     */
+    void schedule(@NonNull Callback callback, long deadline){
+        if(deadline == NO_DEADLINE) {
+            cancel(callback);
+            return;
+        }
+
+        int index = indexOf(callback);
+        if(index < 0) {
+            ensureCapacity(count + 1);
+            index = count++;
+            callbacks[index] = new WeakReference<>(callback);
+        }
+        deadlines[index] = deadline;
+
+        if(!dispatching)
+            scheduleNextMessage();
+    }
+
+    /**
+     * Elimina el registro de un reloj
+     */
+    void cancel(@NonNull Callback callback){
+        int index = indexOf(callback);
+        if(index < 0)
+            return;
+
+        callbacks[index] = null;
+        deadlines[index] = NO_DEADLINE;
+        if(!dispatching) {
+            compact();
+            scheduleNextMessage();
+        }
+    }
+
+    /**
+     * @return cantidad de relojes registrados
+     */
+    int size(){
+        return count;
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        if(msg.what != MSG_TICK)
+            return false;
+
+        scheduledDeadline = NO_DEADLINE;
+        long now = SystemClock.uptimeMillis();
+        dispatching = true;
+        try {
+            //los relojes que se registran durante la pasada se agregan al final y tambien se revisan
+            for (int i = 0; i < count; i++) {
+                if (callbacks[i] == null || deadlines[i] > now)
+                    continue;
+
+                Callback callback = callbacks[i].get();
+                long next = callback == null ? NO_DEADLINE : callback.onTick(now);
+                //onTick pudo haber cancelado o reprogramado este mismo reloj
+                if (callbacks[i] != null && deadlines[i] <= now)
+                    deadlines[i] = next;
+                if (deadlines[i] == NO_DEADLINE)
+                    callbacks[i] = null;
+            }
+        } finally {
+            dispatching = false;
+        }
+        compact();
+        scheduleNextMessage();
+        return true;
+    }
+
+    private int indexOf(Callback callback){
+        for(int i = 0; i < count; i++){
+            if(callbacks[i] != null && callbacks[i].get() == callback)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Elimina los espacios vacios y los relojes que ya no existen
+     */
+    private void compact(){
+        int size = 0;
+        for(int i = 0; i < count; i++){
+            if(callbacks[i] == null || callbacks[i].get() == null)
+                continue;
+            callbacks[size] = callbacks[i];
+            deadlines[size] = deadlines[i];
+            size++;
+        }
+        for(int i = size; i < count; i++){
+            callbacks[i] = null;
+        }
+        count = size;
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity <= callbacks.length)
+            return;
+        int newCapacity = Math.max(capacity, callbacks.length * 2);
+        callbacks = Arrays.copyOf(callbacks, newCapacity);
+        deadlines = Arrays.copyOf(deadlines, newCapacity);
+    }
+
+    /**
+     * Deja un solo mensaje en el looper, programado para el deadline mas cercano
+     */
+    private void scheduleNextMessage(){
+        long earliest = NO_DEADLINE;
+        for(int i = 0; i < count; i++){
+            if(callbacks[i] != null && (earliest == NO_DEADLINE || deadlines[i] < earliest))
+                earliest = deadlines[i];
+        }
+        if(earliest == scheduledDeadline)
+            return;
+
+        handler.removeMessages(MSG_TICK);
+        scheduledDeadline = earliest;
+        if(earliest != NO_DEADLINE)
+            handler.sendEmptyMessageAtTime(MSG_TICK, earliest);
+    }
+}
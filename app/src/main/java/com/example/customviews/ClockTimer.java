@@ -0,0 +1,254 @@
+package com.example.customviews;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.view.View;
+
+import com.example.customviews.core.Countdown;
+
+/**
+ * Cuenta regresiva de un reloj y todo lo que la mueve en el hilo principal: los ticks del
+ * {@link ClockTicker} compartido (o de cada frame, ver {@link #setFrameTicksBelow(long)}), solo
+ * los que hacen falta segun {@link ClockVisibility}, y la bocina al llegar a cero. La vista solo
+ * muestra el tiempo restante (ver {@link Display}) y le pasa sus controles ({@link IClockView}) y
+ * los eventos de su ciclo de vida.
+ */
+@UiThread
+final class ClockTimer {
+
+    /**
+     * Lo que la vista muestra del tiempo restante
+     */
+    interface Display {
+        /**
+         * Muestra el tiempo restante, invalidando lo que cambie
+         * @param fromTick false si se actualiza por un cambio de estado (start, reset, visibilidad,
+         *                 formato), en cuyo caso el cambio no tiene un instante ideal
+         */
+        void showRemaining(long now, long remainingMillis, boolean fromTick);
+
+        /**
+         * @return mientras la cuenta corre, instante en el que cambia el valor mostrado
+         */
+        long nextTickTime(long now);
+    }
+
+    /**
+     * Para vistas que hacen algo mas en cada tick, por ejemplo medir su retraso
+     */
+    interface TickListener {
+        /**
+         * Se llama antes de actualizar el valor en cada tick
+         * @param scheduledTime instante para el que se programo el tick
+         */
+        void onTick(long now, long scheduledTime);
+
+        /**
+         * Se llama cada vez que se programa el siguiente tick
+         * @param deadline instante del tick, ya filtrado segun la visibilidad, o
+         *                 {@link ClockTicker#NO_DEADLINE} si no hay mas ticks
+         */
+        void onScheduled(long deadline);
+    }
+
+    private final View view;
+    private final Display display;
+    private final Countdown countdown;
+    private final ClockVisibility visibility;
+    private TickListener tickListener;
+    private Buzzer buzzer;
+    private long frameTicksThresholdMillis;
+    private VsyncTicker vsyncTicker;
+    /**
+     * Instante para el que se programo el tick pendiente
+     */
+    private long scheduledTickTime = ClockTicker.NO_DEADLINE;
+
+    ClockTimer(@NonNull View view, long durationMillis, @NonNull Display display) {
+        this.view = view;
+        this.display = display;
+        this.countdown = new Countdown(durationMillis);
+        this.visibility = new ClockVisibility(view);
+    }
+
+    void setTickListener(@Nullable TickListener tickListener){
+        this.tickListener = tickListener;
+    }
+
+    /**
+     * Programa los ticks en el primer frame posterior a cada cambio del valor, con frame callbacks
+     * del Choreographer, cuando quedan menos de {@code thresholdMillis}: por ejemplo mientras se
+     * muestran decimas. En dispositivos sin frame callbacks se sigue usando el {@link ClockTicker}
+     * @param thresholdMillis tiempo restante, o 0 para usar siempre el {@link ClockTicker}
+     */
+    void setFrameTicksBelow(long thresholdMillis){
+        frameTicksThresholdMillis = Math.max(0, thresholdMillis);
+    }
+
+    /**
+     * @return la cuenta regresiva, solo para leerla: los cambios de estado se hacen con
+     * {@link #start()}, {@link #stop()} y {@link #reset()}, que tambien programan los ticks
+     */
+    @NonNull Countdown getCountdown(){
+        return countdown;
+    }
+
+    boolean isVisible(){
+        return visibility.isVisible();
+    }
+
+    //region //Controles
+
+    void start(){
+        long now = SystemClock.uptimeMillis();
+        countdown.start(now);
+        schedule(update(now, false));
+    }
+
+    void stop(){
+        countdown.stop(SystemClock.uptimeMillis());
+        schedule(ClockTicker.NO_DEADLINE);
+    }
+
+    void reset(){
+        long now = SystemClock.uptimeMillis();
+        countdown.reset(now);
+        schedule(update(now, false));
+    }
+
+    /**
+     * Vuelve a mostrar el tiempo restante y a programar los ticks, por ejemplo si cambio el formato
+     */
+    void refresh(){
+        schedule(update(SystemClock.uptimeMillis(), false));
+    }
+
+    //endregion
+
+    //region //Ciclo de vida de la vista
+
+    void onAttachedToWindow(){
+        //la bocina se carga antes de que se necesite, para que suene sin demora al llegar a cero
+        if(!view.isInEditMode())
+            buzzer = Buzzer.acquire(view.getContext());
+        if(visibility.setAttached(true))
+            refresh();
+    }
+
+    void onDetachedFromWindow(){
+        if(visibility.setAttached(false))
+            refresh();
+        if(buzzer != null) {
+            buzzer.release();
+            buzzer = null;
+        }
+    }
+
+    /**
+     * Se llama desde {@code onVisibilityChanged} y {@code onWindowVisibilityChanged}. Como la
+     * cuenta sigue anclada a su deadline, al volver a verse el valor se pone al dia con una sola
+     * actualizacion, sin importar cuanto tiempo estuvo oculto
+     */
+    void onVisibilityChanged(){
+        if(visibility.refresh())
+            refresh();
+    }
+
+    //endregion
+
+    //region //Ticks
+
+    /**
+     * Muestra el tiempo restante y, si llego a cero, termina la cuenta y hace sonar la bocina
+     * @return instante en el que se debe volver a actualizar, o {@link ClockTicker#NO_DEADLINE}
+     */
+    long update(long now, boolean fromTick){
+        display.showRemaining(now, countdown.remainingMillis(now), fromTick);
+
+        if(countdown.hasExpired(now)) {
+            long expiredAt = countdown.getDeadline();
+            countdown.finish();
+            //suena la vocina
+            if(buzzer != null)
+                buzzer.play(expiredAt);
+            return ClockTicker.NO_DEADLINE;
+        }
+        if(countdown.isRunning())
+            return display.nextTickTime(now);
+        return ClockTicker.NO_DEADLINE;
+    }
+
+    /**
+     * @return el tick que se debe programar segun la visibilidad (ver {@link ClockVisibility})
+     */
+    long filter(long deadline){
+        return visibility.filter(deadline, countdown.getDeadline());
+    }
+
+    /**
+     * Programa el siguiente tick; si el reloj no se ve, solo la llegada a cero
+     */
+    void schedule(long deadline){
+        scheduleFiltered(filter(deadline));
+    }
+
+    private void scheduleFiltered(long deadline){
+        scheduledTickTime = deadline;
+        if(usesFrameTicks(deadline)) {
+            ClockTicker.getInstance().cancel(tickCallback);
+            if(vsyncTicker == null)
+                vsyncTicker = new VsyncTicker(frameCallback);
+            vsyncTicker.schedule(deadline);
+        }else {
+            if(vsyncTicker != null)
+                vsyncTicker.cancel();
+            ClockTicker.getInstance().schedule(tickCallback, deadline);
+        }
+        if(tickListener != null)
+            tickListener.onScheduled(deadline);
+    }
+
+    /**
+     * @return true si el tick de ese instante cae por debajo de {@link #setFrameTicksBelow(long)},
+     * el reloj se ve y el dispositivo soporta frame callbacks
+     */
+    private boolean usesFrameTicks(long deadline){
+        return deadline != ClockTicker.NO_DEADLINE
+                && frameTicksThresholdMillis > 0
+                && visibility.isVisible()
+                && VsyncTicker.isSupported()
+                && countdown.isRunning()
+                && countdown.getDeadline() - deadline <= frameTicksThresholdMillis;
+    }
+
+    /**
+     * @return instante del siguiente tick, ya filtrado
+     */
+    private long tick(long now){
+        if(tickListener != null)
+            tickListener.onTick(now, scheduledTickTime);
+        return filter(update(now, true));
+    }
+
+    private final ClockTicker.Callback tickCallback = new ClockTicker.Callback() {
+        @Override
+        public long onTick(long now) {
+            long next = tick(now);
+            //reprograma o cancela este mismo callback, o pasa a los frame callbacks
+            scheduleFiltered(next);
+            return usesFrameTicks(next) ? ClockTicker.NO_DEADLINE : next;
+        }
+    };
+
+    private final ClockTicker.Callback frameCallback = new ClockTicker.Callback() {
+        @Override
+        public long onTick(long frameTime) {
+            scheduleFiltered(tick(frameTime));
+            return ClockTicker.NO_DEADLINE;
+        }
+    };
+
+    //endregion
+}
@@ -0,0 +1,87 @@
+package com.example.customviews;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.view.View;
+
+/**
+ * Decide que ticks necesita un reloj segun si se ve. La cuenta regresiva sigue anclada a su
+ * deadline aunque no se programe ningun tick, asi que al volver a verse el reloj se pone al dia
+ * con una sola actualizacion.
+ * <ul>
+ *     <li>Visible: todos los ticks, uno por cada cambio del valor mostrado.</li>
+ *     <li>Oculto (la vista o un ancestro no es visible, o la ventana esta oculta, por ejemplo con
+ *     la actividad detenida): solo el tick de la llegada a cero, para que suene la bocina.</li>
+ *     <li>Fuera de una ventana: ningun tick.</li>
+ * </ul>
+ */
+@UiThread
+final class ClockVisibility {
+
+    static final int DETACHED = 0;
+    static final int HIDDEN = 1;
+    static final int VISIBLE = 2;
+
+    private final View view;
+    private boolean attached;
+    private int state = DETACHED;
+
+    ClockVisibility(@NonNull View view) {
+        this.view = view;
+    }
+
+    /**
+     * Se llama desde {@code onAttachedToWindow} y {@code onDetachedFromWindow}
+     * @return true si cambio el estado y hay que volver a programar los ticks
+     */
+    boolean setAttached(boolean attached){
+        this.attached = attached;
+        return refresh();
+    }
+
+    /**
+     * Vuelve a calcular el estado; se llama desde {@code onVisibilityChanged} y
+     * {@code onWindowVisibilityChanged}
+     * @return true si cambio el estado y hay que volver a programar los ticks
+     */
+    boolean refresh(){
+        int newState;
+        if(!attached)
+            newState = DETACHED;
+        else if(view.getWindowVisibility() == View.VISIBLE && view.isShown())
+            newState = VISIBLE;
+        else
+            newState = HIDDEN;
+        if(newState == state)
+            return false;
+        state = newState;
+        return true;
+    }
+
+    int getState(){
+        return state;
+    }
+
+    boolean isVisible(){
+        return state == VISIBLE;
+    }
+
+    /**
+     * @param nextTick instante del siguiente tick que pide el reloj, o
+     *                 {@link ClockTicker#NO_DEADLINE} si no necesita mas
+     * @param expiry instante en el que llega a cero la cuenta regresiva que corre
+     * @return instante del tick que se debe programar en el estado actual
+     */
+    long filter(long nextTick, long expiry){
+        if(nextTick == ClockTicker.NO_DEADLINE)
+            return ClockTicker.NO_DEADLINE;
+        switch (state){
+            case VISIBLE:
+                return nextTick;
+            case HIDDEN:
+                return Math.max(nextTick, expiry);
+            default:
+                return ClockTicker.NO_DEADLINE;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.example.customviews;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.support.annotation.ColorRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.example.customviews.core.ClockCommand;
+import com.example.customviews.core.ClockFormat;
+import com.example.customviews.core.ClockGrid;
+import com.example.customviews.core.Countdown;
+import com.example.customviews.core.CountdownTable;
+
+/**
+ * Muchos relojes en una sola vista, distribuidos en una grilla de filas y columnas.
+ * En lugar de una vista por reloj, con sus propios Paints, Paths, measure y timer, el estado de
+ * todos los relojes se guarda en arreglos de primitivos ({@link CountdownTable} y las mascaras de
+ * segmentos), todos se dibujan en un solo onDraw con la misma {@link SegmentGeometry} trasladando
+ * el canvas, y todos se actualizan con un solo registro en el {@link ClockTicker}. Cada reloj
+ * adicional cuesta unas pocas operaciones de dibujo.
+ */
+public class ClockWallView extends View implements IClockView, ClockCommand.Target {
+
+    private static final int DEFAULT_CLOCK_COUNT = 4;
+
+    private int defaultClockHeight;
+    /**
+     * Paleta propia; la reemplaza el tema de {@link ClockThemes} mientras esta activo
+     */
+    private ClockPalette palette;
+    private ClockPalette appliedPalette;
+
+    private ClockFormat format = ClockFormat.SECONDS;
+    private long defaultMillis = 24 * Countdown.SECOND;
+    private int cellPadding = 1;
+    /**
+     * Columnas de la grilla de relojes, o 0 para calcularlas segun la cantidad de relojes
+     */
+    private int requestedColumns = 0;
+    private int columns;
+    private int rows;
+
+    private CountdownTable countdowns;
+    private long[] displayedUnits;
+    private long[] activeMasks;
+
+    /**
+     * Geometria de un reloj en la esquina superior izquierda; los demas se dibujan trasladandola
+     */
+    private SegmentGeometry geometry;
+    private final ClockGrid grid = new ClockGrid();
+    private float clockWidth;
+    private float clockHeight;
+    private final Rect dirtyRect = new Rect();
+
+    private Buzzer buzzer;
+    private final ClockVisibility clockVisibility = new ClockVisibility(this);
+
+    /**
+     * Se utiliza cuando se crean vistas manualmente, por código
+     * @param context contexto en el cual se infla vista
+     */
+    public ClockWallView(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Se utiliza cuando se crea la vista desde XML.
+     */
+    public ClockWallView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init(attrs);
+    }
+
+    private void init(@Nullable AttributeSet attrs){
+        defaultClockHeight = (int) (100 * getContext().getResources().getDisplayMetrics().density);
+        int backgroundColor = resolveColor(R.color.colorPrimary);
+        int activeTextColor = resolveColor(R.color.colorAccent);
+        int inactiveTextColor = resolveColor(R.color.colorInactive);
+        int clockCount = DEFAULT_CLOCK_COUNT;
+
+        if(attrs != null) {
+            TypedArray a = getContext().getTheme().obtainStyledAttributes(
+                    attrs,
+                    R.styleable.clock_view,
+                    0, 0);
+            try {
+                backgroundColor = a.getColor(R.styleable.clock_view_background_color, backgroundColor);
+                activeTextColor = a.getColor(R.styleable.clock_view_active_text_color, activeTextColor);
+                inactiveTextColor = a.getColor(R.styleable.clock_view_inactive_text_color, inactiveTextColor);
+                String pattern = a.getString(R.styleable.clock_view_clock_format);
+                if(pattern != null)
+                    format = ClockFormat.of(pattern);
+                int defaultNumber = a.getInt(R.styleable.clock_view_default_value, 24);
+                if(defaultNumber >= 0 && defaultNumber * Countdown.SECOND <= format.getMaxMillis())
+                    defaultMillis = defaultNumber * Countdown.SECOND;
+                clockCount = Math.max(1, a.getInt(R.styleable.clock_view_clock_count, clockCount));
+                requestedColumns = Math.max(0, a.getInt(R.styleable.clock_view_columns, 0));
+            } finally {
+                a.recycle();
+            }
+        }
+
+        palette = ClockPalette.of(backgroundColor, activeTextColor, inactiveTextColor,
+                backgroundColor, backgroundColor);
+        selectPalette();
+        setClockCount(clockCount);
+        if(!isInEditMode())
+            start();
+    }
+
+    private int resolveColor(@ColorRes int colorId){
+        return ContextCompat.getColor(getContext(), colorId);
+    }
+
+    /**
+     * Cambia la paleta de todos los relojes, sin crear Paints
+     */
+    public void setPalette(ClockPalette palette){
+        this.palette = palette;
+        if(selectPalette())
+            invalidate();
+    }
+
+    public ClockPalette getPalette(){
+        return palette;
+    }
+
+    /**
+     * @return true si cambio la paleta con la que se dibuja
+     */
+    private boolean selectPalette(){
+        ClockPalette selected = ClockThemes.getTheme() != null ? ClockThemes.getTheme() : palette;
+        if(selected == appliedPalette)
+            return false;
+        appliedPalette = selected;
+        return true;
+    }
+
+    private final ClockThemes.Listener themeListener = new ClockThemes.Listener() {
+        @Override
+        public void onThemeChanged() {
+            if(selectPalette())
+                invalidate();
+        }
+    };
+
+    //region //Clocks
+
+    /**
+     * Cambia la cantidad de relojes. Todos vuelven a la duracion por defecto, detenidos
+     */
+    public void setClockCount(int clockCount){
+        if(clockCount < 1)
+            throw new IllegalArgumentException("clockCount must be positive: " + clockCount);
+        countdowns = new CountdownTable(clockCount, defaultMillis);
+        displayedUnits = new long[clockCount];
+        activeMasks = new long[clockCount];
+        for(int i = 0; i < clockCount; i++){
+            updateSegmentStates(i, defaultMillis);
+        }
+        updateGridShape();
+        ClockTicker.getInstance().cancel(tickCallback);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    public int getClockCount(){
+        return countdowns.size();
+    }
+
+    /**
+     * @param columns columnas de la grilla de relojes, o 0 para calcularlas segun la cantidad de
+     *                relojes
+     */
+    public void setColumns(int columns){
+        requestedColumns = Math.max(0, columns);
+        updateGridShape();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Cambia el formato de todos los relojes. El tiempo restante de cada uno no cambia, pero se
+     * limita al maximo del nuevo formato
+     */
+    public void setFormat(ClockFormat format){
+        if(format == this.format)
+            return;
+        this.format = format;
+        long now = SystemClock.uptimeMillis();
+        for(int i = 0; i < countdowns.size(); i++){
+            if(countdowns.getDurationMillis(i) > format.getMaxMillis())
+                countdowns.setDuration(i, format.getMaxMillis(), now);
+            updateSegmentStates(i, countdowns.remainingMillis(i, now));
+        }
+        geometry = null;
+        requestLayout();
+        invalidate();
+        scheduleTick(now);
+    }
+
+    public ClockFormat getFormat(){
+        return format;
+    }
+
+    /**
+     * Inicia la cuenta regresiva de un reloj
+     * @param index posicion del reloj, empezando por la esquina superior izquierda y por filas
+     */
+    @Override
+    public void start(int index){
+        long now = SystemClock.uptimeMillis();
+        countdowns.start(index, now);
+        scheduleTick(now);
+    }
+
+    /**
+     * Detiene un reloj
+     */
+    @Override
+    public void stop(int index){
+        long now = SystemClock.uptimeMillis();
+        countdowns.stop(index, now);
+        scheduleTick(now);
+    }
+
+    /**
+     * Regresa un reloj a su duracion, sin cambiar si esta corriendo o no
+     */
+    @Override
+    public void reset(int index){
+        long now = SystemClock.uptimeMillis();
+        countdowns.reset(index, now);
+        scheduleTick(now);
+    }
+
+    /**
+     * Cambia la duracion de un reloj y lo regresa a esa duracion. Como puede llegar de una consola
+     * externa, un valor fuera del rango del formato se limita en lugar de rechazarse
+     */
+    @Override
+    public void setDurationMillis(int index, long durationMillis){
+        long now = SystemClock.uptimeMillis();
+        countdowns.setDuration(index, Math.max(0, Math.min(durationMillis, format.getMaxMillis())), now);
+        scheduleTick(now);
+    }
+
+    public long getRemainingMillis(int index){
+        return countdowns.remainingMillis(index, SystemClock.uptimeMillis());
+    }
+
+    public boolean isRunning(int index){
+        return countdowns.isRunning(index);
+    }
+
+    @Override
+    public void start() {
+        long now = SystemClock.uptimeMillis();
+        for(int i = 0; i < countdowns.size(); i++){
+            countdowns.start(i, now);
+        }
+        scheduleTick(now);
+    }
+
+    @Override
+    public void stop() {
+        long now = SystemClock.uptimeMillis();
+        for(int i = 0; i < countdowns.size(); i++){
+            countdowns.stop(i, now);
+        }
+        scheduleTick(now);
+    }
+
+    @Override
+    public void reset() {
+        long now = SystemClock.uptimeMillis();
+        for(int i = 0; i < countdowns.size(); i++){
+            countdowns.reset(i, now);
+        }
+        scheduleTick(now);
+    }
+
+    private void updateSegmentStates(int index, long remainingMillis){
+        displayedUnits[index] = format.unitsFor(remainingMillis);
+        activeMasks[index] = format.maskFor(displayedUnits[index]);
+    }
+
+    private void updateGridShape(){
+        int clockCount = countdowns.size();
+        columns = requestedColumns > 0
+                ? Math.min(requestedColumns, clockCount)
+                : (int) Math.ceil(Math.sqrt(clockCount));
+        rows = (clockCount + columns - 1) / columns;
+    }
+
+    //endregion
+
+    //region //View overrides
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int defaultClockWidth = defaultClockHeight * ClockGrid.columnsFor(cellPadding, format) / ClockGrid.rowsFor(cellPadding);
+        int resolvedWidth = resolveSize(defaultClockWidth * columns + getPaddingLeft() + getPaddingRight(), widthMeasureSpec);
+        int resolvedHeight = resolveSize(defaultClockHeight * rows + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        setMeasuredDimension(resolvedWidth, resolvedHeight);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        float contentWidth = right - left - getPaddingLeft() - getPaddingRight();
+        float contentHeight = bottom - top - getPaddingTop() - getPaddingBottom();
+        float newClockWidth = Math.max(0, contentWidth / columns);
+        float newClockHeight = Math.max(0, contentHeight / rows);
+        if(geometry != null && newClockWidth == clockWidth && newClockHeight == clockHeight)
+            return;
+
+        clockWidth = newClockWidth;
+        clockHeight = newClockHeight;
+        //todos los relojes comparten la geometria del primero, centrada en su celda
+        grid.setup(clockWidth, clockHeight, 0, 0, 0, 0, cellPadding, format);
+        geometry = SegmentGeometryCache.obtain(format, grid.getCellSize(), cellPadding,
+                grid.getHorizontalOffset(), grid.getVerticalOffset());
+        //con tantos relojes conviene un solo path por valor
+        geometry.prepareMergedPaths();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final ClockPalette palette = appliedPalette;
+        canvas.drawRect(0, 0, getWidth(), getHeight(), palette.background);
+        if(geometry == null)
+            return;
+
+        final boolean merged = geometry.hasMergedPaths();
+        final Path[] paths = geometry.paths;
+        final int clockCount = countdowns.size();
+        int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        for(int i = 0; i < clockCount; i++){
+            int column = i % columns;
+            if(i > 0)
+                canvas.translate(column == 0 ? -clockWidth * (columns - 1) : clockWidth, column == 0 ? clockHeight : 0);
+            if(merged) {
+                canvas.drawPath(geometry.inactivePathForUnits(displayedUnits[i]), palette.inactiveText);
+                canvas.drawPath(geometry.activePathForUnits(displayedUnits[i]), palette.activeText);
+            }else {
+                long mask = activeMasks[i];
+                for(int segment = 0; segment < paths.length; segment++){
+                    canvas.drawPath(paths[segment], ClockFormat.isActive(mask, segment) ? palette.activeText : palette.inactiveText);
+                }
+            }
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if(!isInEditMode())
+            buzzer = Buzzer.acquire(getContext());
+        ClockThemes.addListener(themeListener);
+        if(selectPalette())
+            invalidate();
+        if(clockVisibility.setAttached(true))
+            scheduleTick(SystemClock.uptimeMillis());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        ClockThemes.removeListener(themeListener);
+        if(clockVisibility.setAttached(false))
+            scheduleTick(SystemClock.uptimeMillis());
+        if(buzzer != null) {
+            buzzer.release();
+            buzzer = null;
+        }
+    }
+
+    //endregion
+
+    //region //Timer manager
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        //puede llamarse antes de que se inicialicen los campos
+        if(clockVisibility != null && clockVisibility.refresh())
+            scheduleTick(SystemClock.uptimeMillis());
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if(clockVisibility != null && clockVisibility.refresh())
+            scheduleTick(SystemClock.uptimeMillis());
+    }
+
+    private final ClockTicker.Callback tickCallback = new ClockTicker.Callback() {
+        @Override
+        public long onTick(long now) {
+            return clockVisibility.filter(updateClocks(now), countdowns.earliestDeadline());
+        }
+    };
+
+    /**
+     * Pone al dia todos los relojes y programa el siguiente tick; si la vista no se ve, solo la
+     * llegada a cero del primero que termina (ver {@link ClockVisibility})
+     */
+    private void scheduleTick(long now){
+        long next = updateClocks(now);
+        ClockTicker.getInstance().schedule(tickCallback, clockVisibility.filter(next, countdowns.earliestDeadline()));
+    }
+
+    /**
+     * Actualiza el valor de todos los relojes en una sola pasada, invalidando solo los que cambian
+     * @return instante del cambio mas cercano entre los relojes que corren, o
+     * {@link ClockTicker#NO_DEADLINE} si ninguno corre
+     */
+    @VisibleForTesting
+    long updateClocks(long now){
+        long next = ClockTicker.NO_DEADLINE;
+        boolean buzz = false;
+        long expiredAt = 0;
+        for(int i = 0, clockCount = countdowns.size(); i < clockCount; i++){
+            long units = format.unitsFor(countdowns.remainingMillis(i, now));
+            if(units != displayedUnits[i]) {
+                displayedUnits[i] = units;
+                activeMasks[i] = format.maskFor(units);
+                invalidateClock(i);
+            }
+
+            if(countdowns.hasExpired(i, now)) {
+                expiredAt = Math.max(expiredAt, countdowns.getDeadline(i));
+                countdowns.finish(i);
+                buzz = true;
+            }else if(countdowns.isRunning(i)) {
+                long change = countdowns.nextChangeTime(i, now, format.getResolutionMillis());
+                if(next == ClockTicker.NO_DEADLINE || change < next)
+                    next = change;
+            }
+        }
+        //los relojes que llegan a cero en el mismo tick suenan una sola vez
+        if(buzz && buzzer != null)
+            buzzer.play(expiredAt);
+        return next;
+    }
+
+    private void invalidateClock(int index){
+        if(geometry == null) {
+            invalidate();
+            return;
+        }
+        int left = (int) (getPaddingLeft() + (index % columns) * clockWidth);
+        int top = (int) (getPaddingTop() + (index / columns) * clockHeight);
+        dirtyRect.set(left, top, (int) Math.ceil(left + clockWidth) + 1, (int) Math.ceil(top + clockHeight) + 1);
+        invalidate(dirtyRect);
+    }
+
+    //endregion
+}
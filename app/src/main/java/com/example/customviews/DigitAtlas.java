@@ -0,0 +1,127 @@
+package com.example.customviews;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.example.customviews.core.SegmentShapes;
+import com.example.customviews.core.SevenSegment;
+
+/**
+ * Bitmap con todos los digitos (0..9 y el digito apagado) ya dibujados con sus segmentos activos e
+ * inactivos, para un tamaño de celda dado. Dibujar un digito se reduce a copiar una porcion del
+ * bitmap, en lugar de rellenar 7 paths con anti-aliasing.
+ */
+final class DigitAtlas {
+
+    /**
+     * Cantidad de glifos del atlas: los digitos del 0 al 9 y {@link SevenSegment#BLANK}
+     */
+    static final int GLYPHS = SevenSegment.BLANK + 1;
+    private static final int ATLAS_COLUMNS = 4;
+    private static final int ATLAS_ROWS = (GLYPHS + ATLAS_COLUMNS - 1) / ATLAS_COLUMNS;
+    /**
+     * Pixeles libres alrededor de cada glifo para que no se corte el anti-aliasing
+     */
+    static final int GLYPH_MARGIN = 1;
+    /**
+     * Lado maximo del bitmap, para que pueda subirse como una sola textura
+     */
+    private static final int MAX_DIMENSION = 4096;
+
+    final float cellSize;
+    final int activeColor;
+    final int inactiveColor;
+    final int glyphWidth;
+    final int glyphHeight;
+    final Bitmap bitmap;
+    private final Rect[] glyphBounds = new Rect[GLYPHS];
+
+    private DigitAtlas(float cellSize, int activeColor, int inactiveColor, int glyphWidth, int glyphHeight) {
+        this.cellSize = cellSize;
+        this.activeColor = activeColor;
+        this.inactiveColor = inactiveColor;
+        this.glyphWidth = glyphWidth;
+        this.glyphHeight = glyphHeight;
+        this.bitmap = Bitmap.createBitmap(
+                glyphWidth * ATLAS_COLUMNS, glyphHeight * ATLAS_ROWS, Bitmap.Config.ARGB_8888);
+        for(int glyph = 0; glyph < GLYPHS; glyph++){
+            int left = (glyph % ATLAS_COLUMNS) * glyphWidth;
+            int top = (glyph / ATLAS_COLUMNS) * glyphHeight;
+            glyphBounds[glyph] = new Rect(left, top, left + glyphWidth, top + glyphHeight);
+        }
+        rasterize();
+    }
+
+    /**
+     * Crea el atlas para un tamaño de celda
+     * @return el atlas, o null si el bitmap seria demasiado grande
+     */
+    static @Nullable DigitAtlas create(float cellSize, int activeColor, int inactiveColor, long maxBytes){
+        int glyphWidth = glyphWidthFor(cellSize);
+        int glyphHeight = glyphHeightFor(cellSize);
+        if(glyphWidth * ATLAS_COLUMNS > MAX_DIMENSION || glyphHeight * ATLAS_ROWS > MAX_DIMENSION)
+            return null;
+        if(estimateBytes(cellSize) > maxBytes)
+            return null;
+        return new DigitAtlas(cellSize, activeColor, inactiveColor, glyphWidth, glyphHeight);
+    }
+
+    /**
+     * @return bytes que ocupa el atlas para un tamaño de celda
+     */
+    static long estimateBytes(float cellSize){
+        return 4L * glyphWidthFor(cellSize) * ATLAS_COLUMNS * glyphHeightFor(cellSize) * ATLAS_ROWS;
+    }
+
+    private static int glyphWidthFor(float cellSize){
+        return (int) Math.ceil(SegmentShapes.DIGIT_WIDTH * cellSize) + 2 * GLYPH_MARGIN;
+    }
+
+    private static int glyphHeightFor(float cellSize){
+        return (int) Math.ceil(SegmentShapes.DIGIT_HEIGHT * cellSize) + 2 * GLYPH_MARGIN;
+    }
+
+    /**
+     * @param glyph digito entre 0 y 9, o {@link SevenSegment#BLANK}
+     * @return porcion del bitmap que contiene el glifo
+     */
+    @NonNull Rect glyphBounds(int glyph){
+        return glyphBounds[glyph];
+    }
+
+    boolean matches(float cellSize, int activeColor, int inactiveColor){
+        return this.cellSize == cellSize
+                && this.activeColor == activeColor
+                && this.inactiveColor == inactiveColor;
+    }
+
+    /**
+     * Dibuja cada glifo en el bitmap usando la misma geometria que los paths del reloj
+     */
+    private void rasterize(){
+        Canvas canvas = new Canvas(bitmap);
+        Paint activePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        activePaint.setColor(activeColor);
+        Paint inactivePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        inactivePaint.setColor(inactiveColor);
+
+        Path[] segments = new Path[SevenSegment.SEGMENTS_PER_DIGIT];
+        for(int glyph = 0; glyph < GLYPHS; glyph++){
+            Rect bounds = glyphBounds[glyph];
+            //la fila DIGIT_FIRST_ROW de la grilla queda en el borde superior del glifo
+            SegmentGeometry.createDigitPaths(segments, 0,
+                    bounds.left + GLYPH_MARGIN,
+                    bounds.top + GLYPH_MARGIN - SegmentShapes.DIGIT_FIRST_ROW * cellSize,
+                    cellSize);
+            int mask = SevenSegment.digitMask(glyph);
+            for(int i = 0; i < segments.length; i++){
+                canvas.drawPath(segments[i], SevenSegment.isActive(mask, i) ? activePaint : inactivePaint);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.customviews;
+
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+/**
+ * Cache compartida por todo el proceso con los atlas de digitos, por tamaño de celda y colores.
+ * El tamaño de la cache se mide en bytes: cuando los atlas superan {@link #MAX_BYTES} se
+ * descartan los que se usaron hace mas tiempo.
+ */
+final class DigitAtlasCache {
+
+    static final int MAX_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, 32 * 1024 * 1024);
+
+    private static final LruCache<Key, DigitAtlas> cache = new LruCache<Key, DigitAtlas>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(Key key, DigitAtlas atlas) {
+            return atlas.bitmap.getByteCount();
+        }
+    };
+
+    private DigitAtlasCache() {
+    }
+
+    /**
+     * Devuelve el atlas para los parametros dados, creandolo solo si no estaba en la cache
+     * @return el atlas, o null si no entra en la cache
+     */
+    static @Nullable DigitAtlas obtain(float cellSize, int activeColor, int inactiveColor){
+        Key key = new Key(cellSize, activeColor, inactiveColor);
+        DigitAtlas atlas = cache.get(key);
+        if(atlas == null){
+            atlas = DigitAtlas.create(cellSize, activeColor, inactiveColor, MAX_BYTES);
+            if(atlas != null)
+                cache.put(key, atlas);
+        }
+        return atlas;
+    }
+
+    static void clear(){
+        cache.evictAll();
+    }
+
+    private static final class Key{
+        final float cellSize;
+        final int activeColor;
+        final int inactiveColor;
+
+        Key(float cellSize, int activeColor, int inactiveColor) {
+            this.cellSize = cellSize;
+            this.activeColor = activeColor;
+            this.inactiveColor = inactiveColor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Float.compare(key.cellSize, cellSize) == 0
+                    && activeColor == key.activeColor
+                    && inactiveColor == key.inactiveColor;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(cellSize);
+            result = 31 * result + activeColor;
+            result = 31 * result + inactiveColor;
+            return result;
+        }
+    }
+}
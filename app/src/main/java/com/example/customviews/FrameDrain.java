@@ -0,0 +1,71 @@
+package com.example.customviews;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ejecuta una accion en el hilo principal, en el siguiente frame, la pidan cuantas veces la pidan
+ * y desde el hilo que sea. Sirve para vaciar una cola que llenan otros hilos: solo el primer
+ * pedido despues de cada ejecucion postea un mensaje, asi que una rafaga de comandos cuesta un
+ * mensaje y un frame callback, no uno por comando.
+ *
+ * En versiones anteriores a Jelly Bean, donde no hay frame callbacks, se ejecuta en el mensaje.
+ */
+final class FrameDrain {
+
+    private final Runnable action;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    private final Runnable postFrameCallback = new Runnable() {
+        @Override
+        public void run() {
+            if(VsyncTicker.isSupported()) {
+                Choreographer.getInstance().postFrameCallback(frameCallback);
+            }else {
+                requested.set(false);
+                action.run();
+            }
+        }
+    };
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            //se marca antes de ejecutar, para que lo que llegue durante la accion pida otro frame
+            requested.set(false);
+            action.run();
+        }
+    };
+
+    FrameDrain(@NonNull Runnable action) {
+        this.action = action;
+    }
+
+    /**
+     * Pide que la accion se ejecute en el siguiente frame
+     */
+    @AnyThread
+    void request(){
+        if(requested.compareAndSet(false, true))
+            handler.post(postFrameCallback);
+    }
+
+    /**
+     * Cancela el pedido pendiente y ejecuta la accion en el momento
+     */
+    @UiThread
+    void runNow(){
+        handler.removeCallbacks(postFrameCallback);
+        if(VsyncTicker.isSupported())
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        requested.set(false);
+        action.run();
+    }
+}
@@ -4,45 +4,159 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.media.MediaPlayer;
-import android.support.annotation.ColorRes;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
+import android.support.annotation.VisibleForTesting;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.example.customviews.core.ClockFormat;
+import com.example.customviews.core.ClockGrid;
+import com.example.customviews.core.ClockMetrics;
+import com.example.customviews.core.Countdown;
+import com.example.customviews.core.LagStats;
+import com.example.customviews.core.SegmentFade;
+import com.example.customviews.core.SegmentMesh;
+import com.example.customviews.core.SpriteSheetIndex;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 
 /**
  * Reloj de 24 segundos que soporta seteo de padding por XML
  */
 public class OptimizedClockView extends View implements IClockView{
 
+    /**
+     * Dibuja cada segmento con su propio drawPath
+     */
+    public static final int RENDER_SEGMENTS = 0;
+    /**
+     * Dibuja todos los segmentos activos con un solo path, y todos los inactivos con otro
+     */
+    public static final int RENDER_MERGED = 1;
+    /**
+     * Copia cada digito desde un bitmap en el que ya estan dibujados todos los digitos.
+     * Si el atlas no entra en memoria, se dibuja como {@link #RENDER_MERGED}
+     */
+    public static final int RENDER_ATLAS = 2;
+    /**
+     * Copia cada digito desde la hoja de sprites generada en el build, reduciendolo al tamaño de
+     * celda. Si la hoja no esta empaquetada, los colores no son los de la hoja o las celdas son mas
+     * grandes que las de la hoja, se dibuja como {@link #RENDER_ATLAS}
+     */
+    public static final int RENDER_SPRITES = 3;
+    /**
+     * Dibuja todos los segmentos con un solo drawVertices, como triangulos con el color en cada
+     * vertice. Al cambiar de valor solo se reescriben los colores de los segmentos que cambian.
+     * Los vertices no tienen anti-aliasing, y antes de API 29 solo se dibujan por software, asi
+     * que en esas versiones el reloj usa una capa de software
+     */
+    public static final int RENDER_VERTICES = 4;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({RENDER_SEGMENTS, RENDER_MERGED, RENDER_ATLAS, RENDER_SPRITES, RENDER_VERTICES})
+    public @interface RenderMode {}
+
+    /**
+     * Primera version en la que drawVertices funciona con aceleracion por hardware
+     */
+    private static final int HARDWARE_VERTICES_API = 29;
+
+    /**
+     * Tiempo maximo de dibujo de un frame con un fundido en curso; si se pasa, el fundido termina
+     * en el frame siguiente y los segmentos quedan en su estado final
+     */
+    static final long TRANSITION_FRAME_BUDGET_NANOS = 1000000L;
+
     private int defaultSize;
-    protected Paint backgroundPaint;
-    protected Paint squarePaint;
-    protected Paint gridPaint;
-    protected Paint activeTextPaint;
-    protected Paint inactiveTextPaint;
+    /**
+     * Paints de la paleta que se esta usando; son compartidos, no se deben modificar
+     */
+    private Paint backgroundPaint;
+    private Paint squarePaint;
+    private Paint gridPaint;
+    private Paint activeTextPaint;
+    private Paint inactiveTextPaint;
 
-    protected int mBackgroundColor = resolveColor(R.color.colorPrimary);
-    protected int mActiveTextColor = resolveColor(R.color.colorAccent);
-    protected int mInactiveTextColor = resolveColor(R.color.colorInactive);
+    /**
+     * Estilo con el que se inicializo el reloj; los setters cambian los campos, no el estilo
+     */
+    private ClockStyle style;
+    /**
+     * Paleta propia del reloj; la reemplazan la de advertencia y el tema de {@link ClockThemes}
+     */
+    private ClockPalette palette;
+    private ClockPalette warningPalette;
+    private long warningThresholdMillis;
+    private ClockPalette appliedPalette;
 
     protected int cellPadding = 0;
 
     protected boolean mShowGridBackground = true;
     protected boolean mShowGrid = true;
 
-    protected int mCurrentNumber = 24;
-    private float canvasSize;
-    private float cellSize;
-    private float nColumns;
-    private float horizontalOffset;
-    private float verticalOffset;
-    List<ClockPath> paths;
+    /**
+     * Tiempo restante que se muestra
+     */
+    protected long mCurrentMillis = 24 * Countdown.SECOND;
+    protected ClockFormat mFormat = ClockFormat.SECONDS;
+    /**
+     * Tiempo restante por debajo del cual se muestran decimas con {@link #mTenthsFormat}, o 0 para
+     * no mostrarlas nunca
+     */
+    protected long mTenthsThresholdMillis = 0;
+    protected ClockFormat mTenthsFormat = ClockFormat.SECOND_TENTHS;
+    @RenderMode
+    protected int mRenderMode = RENDER_SEGMENTS;
+    protected boolean mStaticLayerEnabled = false;
+    private final ClockGrid grid = new ClockGrid();
+    /**
+     * Geometria del formato que se esta mostrando: {@link #formatGeometry} o {@link #tenthsGeometry}
+     */
+    private SegmentGeometry geometry;
+    private SegmentGeometry formatGeometry;
+    private SegmentGeometry tenthsGeometry;
+    private ClockFormat displayedFormat;
+    private long activeMask;
+    private long displayedUnits;
+    private DigitAtlas digitAtlas;
+    private final RectF atlasDestination = new RectF();
+    private final Rect dirtyRect = new Rect();
+    private StaticLayer staticLayer;
+    /**
+     * Fundido de los segmentos que cambian; sin duracion los segmentos cambian de golpe
+     */
+    private final SegmentFade fade = new SegmentFade(0);
+    /**
+     * Paint propio para los segmentos a mitad del fundido, ya que los de la paleta son compartidos
+     */
+    private final Paint fadePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private VsyncTicker fadeTicker;
+    private boolean fadeOverBudget;
+    /**
+     * Color de cada vertice de la malla de {@link #geometry} para {@link #RENDER_VERTICES}, y el
+     * estado con el que se escribieron
+     */
+    private int[] vertexColors;
+    private SegmentMesh coloredMesh;
+    private long coloredMask;
+    private int coloredActiveColor;
+    private int coloredInactiveColor;
+    private final Paint verticesPaint = new Paint();
+    private boolean softwareLayerForVertices;
+
+    private int lastWidthMeasureSpec;
+    private int lastHeightMeasureSpec;
+    private int lastPaddingLeft;
+    private int lastPaddingTop;
+    private int lastPaddingRight;
+    private int lastPaddingBottom;
 
     /**
      * Se utiliza cuando se crean vistas manualmente, por código
@@ -58,332 +172,829 @@ public class OptimizedClockView extends View implements IClockView{
      * @param attrs
      */
     public OptimizedClockView(Context context, @Nullable AttributeSet attrs) {
-        super(context, attrs);
-        init();
+        this(context, attrs, ClockStyle.defaults(context));
     }
 
     /**
-     *
+     * Para las subclases que leen su propio estilo, por ejemplo de los atributos del XML.
+     * El reloj se inicializa una sola vez, con ese estilo
      */
-    protected void init(){
-        defaultSize = (int) (200 * getContext().getResources().getDisplayMetrics().density);
-        backgroundPaint = createPaintFromResource(mBackgroundColor);
-        activeTextPaint = createPaintFromResource(mActiveTextColor);
-        inactiveTextPaint = createPaintFromResource(mInactiveTextColor);
+    protected OptimizedClockView(Context context, @Nullable AttributeSet attrs, ClockStyle style) {
+        super(context, attrs);
+        init(style);
+    }
 
-        squarePaint = createPaintFromResource(resolveColor(R.color.green));
-        gridPaint = createPaintFromResource(resolveColor(R.color.blue));
+    private void init(ClockStyle style){
+        this.style = style;
+        palette = ClockPalette.of(style);
+        mShowGrid = style.showGrid;
+        mShowGridBackground = style.showSquare;
+        cellPadding = style.cellPadding;
+        mFormat = style.format;
+        mCurrentMillis = style.defaultMillis;
+        mTenthsThresholdMillis = style.tenthsThresholdMillis;
+        mTenthsFormat = style.tenthsFormat;
+        mRenderMode = style.renderMode;
+        mStaticLayerEnabled = style.staticLayer;
+        fade.setDurationMillis(style.transitionMillis);
+        updateLayerType();
 
+        defaultSize = (int) (200 * getContext().getResources().getDisplayMetrics().density);
+        selectPalette();
+
+        timer = new ClockTimer(this, mCurrentMillis, display);
+        timer.setTickListener(tickListener);
+        timer.setFrameTicksBelow(mTenthsThresholdMillis);
+        countdown = timer.getCountdown();
+        updateSegmentStates();
         if(!isInEditMode())
             start();
     }
 
-    private Paint createPaintFromResource(int color){
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paint.setColor(color);
-        return paint;
+    /**
+     * @return estilo con el que se creo el reloj, compartido con los relojes de iguales atributos
+     */
+    public ClockStyle getStyle(){
+        return style;
+    }
+
+    /**
+     * Cambia la paleta propia del reloj, sin crear Paints
+     */
+    public void setPalette(ClockPalette palette){
+        this.palette = palette;
+        if(selectPalette())
+            invalidate();
+    }
+
+    public ClockPalette getPalette(){
+        return palette;
+    }
+
+    /**
+     * Dibuja el reloj con otra paleta cuando queda poco tiempo, por ejemplo en rojo en los ultimos
+     * 5 segundos. Tiene prioridad sobre el tema de {@link ClockThemes}. El cambio se hace en el
+     * tick en el que cambia el valor mostrado
+     * @param thresholdMillis tiempo restante desde el que se usa la paleta
+     * @param warningPalette paleta, por ejemplo {@link ClockPalette#warning(Context)}, o null para
+     *                       desactivar la advertencia
+     */
+    public void setWarning(long thresholdMillis, @Nullable ClockPalette warningPalette){
+        this.warningThresholdMillis = Math.max(0, thresholdMillis);
+        this.warningPalette = warningPalette;
+        if(selectPalette())
+            invalidate();
     }
 
-    private int resolveColor(@ColorRes int colorId){
-        return ContextCompat.getColor(getContext(),colorId);
+    /**
+     * Elige la paleta que corresponde: la de advertencia si queda poco tiempo, si no la del tema
+     * activo, y si no la propia. Solo cambia referencias a Paints compartidos
+     * @return true si cambio y hay que invalidar
+     */
+    private boolean selectPalette(){
+        ClockPalette selected;
+        if(warningPalette != null && mCurrentMillis <= warningThresholdMillis)
+            selected = warningPalette;
+        else if(ClockThemes.getTheme() != null)
+            selected = ClockThemes.getTheme();
+        else
+            selected = palette;
+        if(selected == appliedPalette)
+            return false;
+        appliedPalette = selected;
+        backgroundPaint = selected.background;
+        activeTextPaint = selected.activeText;
+        inactiveTextPaint = selected.inactiveText;
+        squarePaint = selected.square;
+        gridPaint = selected.grid;
+        return true;
     }
 
+    private final ClockThemes.Listener themeListener = new ClockThemes.Listener() {
+        @Override
+        public void onThemeChanged() {
+            if(selectPalette())
+                invalidate();
+        }
+    };
+
     //region //View overrides
 
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int resolvedWidth = resolveSize(defaultSize,widthMeasureSpec);
+        if(metrics == null) {
+            measureClock(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        long start = System.nanoTime();
+        measureClock(widthMeasureSpec, heightMeasureSpec);
+        metrics.recordMeasure(System.nanoTime() - start);
+    }
+
+    private void measureClock(int widthMeasureSpec, int heightMeasureSpec) {
+        //el alto por defecto es el mismo para todos los formatos, el ancho depende de los digitos
+        int defaultWidth = defaultSize * ClockGrid.columnsFor(cellPadding, mFormat) / ClockGrid.rowsFor(cellPadding);
+        int resolvedWidth = resolveSize(defaultWidth,widthMeasureSpec);
         int resolvedHeight = resolveSize(defaultSize,heightMeasureSpec);
 
-        setupGrid(resolvedWidth,resolvedHeight);
-        paths = initNumberPaths();
+        if(hasMeasureInputChanged(widthMeasureSpec, heightMeasureSpec)) {
+            setupGrid(resolvedWidth, resolvedHeight);
+            formatGeometry = SegmentGeometryCache.obtain(mFormat, grid.getCellSize(), cellPadding,
+                    grid.getHorizontalOffset(), grid.getVerticalOffset());
+            tenthsGeometry = null;
+            if(mTenthsThresholdMillis > 0) {
+                //las decimas se dibujan sobre la misma grilla, centradas si tienen menos digitos
+                int extraColumns = ClockGrid.columnsFor(cellPadding, mFormat)
+                        - ClockGrid.columnsFor(cellPadding, mTenthsFormat);
+                tenthsGeometry = SegmentGeometryCache.obtain(mTenthsFormat, grid.getCellSize(), cellPadding,
+                        grid.getHorizontalOffset() + extraColumns / 2f * grid.getCellSize(),
+                        grid.getVerticalOffset());
+            }
+            prepareMergedPaths();
+            selectGeometry();
+        }
 
         setMeasuredDimension(resolvedWidth,resolvedHeight);
     }
 
+    /**
+     * Crea los paths combinados de las geometrias si el modo de dibujo los usa: el atlas y la hoja
+     * de sprites vuelven a ellos cuando no sirven para el tamaño actual
+     */
+    private void prepareMergedPaths(){
+        if(mRenderMode != RENDER_MERGED && mRenderMode != RENDER_ATLAS && mRenderMode != RENDER_SPRITES)
+            return;
+        if(formatGeometry != null)
+            formatGeometry.prepareMergedPaths();
+        if(tenthsGeometry != null)
+            tenthsGeometry.prepareMergedPaths();
+    }
+
+    /**
+     * Indica si cambio algo de lo que depende la geometria desde el ultimo onMeasure, y guarda
+     * los nuevos valores
+     */
+    private boolean hasMeasureInputChanged(int widthMeasureSpec, int heightMeasureSpec){
+        boolean changed = formatGeometry == null
+                || widthMeasureSpec != lastWidthMeasureSpec
+                || heightMeasureSpec != lastHeightMeasureSpec
+                || getPaddingLeft() != lastPaddingLeft
+                || getPaddingTop() != lastPaddingTop
+                || getPaddingRight() != lastPaddingRight
+                || getPaddingBottom() != lastPaddingBottom
+                || cellPadding != formatGeometry.cellPadding
+                || mFormat != formatGeometry.format
+                || (mTenthsThresholdMillis > 0) != (tenthsGeometry != null)
+                || (tenthsGeometry != null && mTenthsFormat != tenthsGeometry.format);
+        lastWidthMeasureSpec = widthMeasureSpec;
+        lastHeightMeasureSpec = heightMeasureSpec;
+        lastPaddingLeft = getPaddingLeft();
+        lastPaddingTop = getPaddingTop();
+        lastPaddingRight = getPaddingRight();
+        lastPaddingBottom = getPaddingBottom();
+        return changed;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
-        final int canvasWidth = canvas.getWidth();
-        final int canvasHeight = canvas.getHeight();
+        if(metrics == null && !fade.isRunning()) {
+            drawClock(canvas);
+            return;
+        }
+        long start = System.nanoTime();
+        drawClock(canvas);
+        long elapsed = System.nanoTime() - start;
+        if(metrics != null)
+            metrics.recordDraw(elapsed);
+        if(fade.isRunning() && elapsed > TRANSITION_FRAME_BUDGET_NANOS)
+            fadeOverBudget = true;
+    }
 
+    private void drawClock(Canvas canvas) {
+        if(mStaticLayerEnabled && drawStaticLayer(canvas)) {
+            if(fade.isRunning())
+                drawFadingSegments(canvas, true);
+            else
+                drawActiveSegments(canvas);
+            return;
+        }
 
+        drawBackground(canvas, canvas.getWidth(), canvas.getHeight());
+
+        if(fade.isRunning()) {
+            drawFadingSegments(canvas, false);
+            return;
+        }
 
-        updatePathsStatesForNumber(paths, mCurrentNumber);
+        switch (mRenderMode){
+            case RENDER_VERTICES:
+                drawSegmentsAsVertices(canvas);
+                break;
+            case RENDER_SPRITES:
+                if(drawDigitsFromSprites(canvas))
+                    break;
+                //si la hoja no sirve para estos colores o este tamaño, se usa el atlas
+            case RENDER_ATLAS:
+                if(drawDigitsFromAtlas(canvas))
+                    break;
+                //si no hay atlas para este tamaño, se dibuja con los paths combinados
+            case RENDER_MERGED:
+                if(geometry.hasMergedPaths()) {
+                    canvas.drawPath(geometry.inactivePathForUnits(displayedUnits), inactiveTextPaint);
+                    canvas.drawPath(geometry.activePathForUnits(displayedUnits), activeTextPaint);
+                    break;
+                }
+                //el formato tiene demasiados valores para combinar los paths de cada uno
+            default:
+                final Path[] paths = geometry.paths;
+                for (int i = 0; i < paths.length; i++) {
+                    Paint pathPaint = ClockFormat.isActive(activeMask, i) ? activeTextPaint : inactiveTextPaint;
+                    canvas.drawPath(paths[i], pathPaint);
+                }
+        }
+    }
 
+    /**
+     * Dibuja el fondo, el cuadrado y la grilla
+     */
+    private void drawBackground(Canvas canvas, int canvasWidth, int canvasHeight){
         canvas.drawRect(0,0,canvasWidth,canvasHeight,backgroundPaint);
         if(mShowGridBackground) {
             canvas.drawRect(
-                    horizontalOffset,
-                    verticalOffset,
-                    canvasSize + horizontalOffset,
-                    canvasSize + verticalOffset,
+                    grid.getHorizontalOffset(),
+                    grid.getVerticalOffset(),
+                    grid.getWidth() + grid.getHorizontalOffset(),
+                    grid.getHeight() + grid.getVerticalOffset(),
                     squarePaint);
         }
 
         if(mShowGrid)
             paintGrid(canvas);
+    }
 
-        for(ClockPath clockPath : paths){
-            Paint pathPaint = clockPath.isActive ? activeTextPaint : inactiveTextPaint;
-            canvas.drawPath(clockPath.path,pathPaint);
+    /**
+     * Dibuja la capa estatica (fondo, cuadrado, grilla y segmentos inactivos), volviendo a
+     * generarla solo si cambio el tamaño, el padding o algun color
+     * @return false si no se pudo crear la capa para el tamaño actual
+     */
+    private boolean drawStaticLayer(Canvas canvas){
+        final int width = getWidth();
+        final int height = getHeight();
+        final int backgroundColor = backgroundPaint.getColor();
+        final int squareColor = squarePaint.getColor();
+        final int gridColor = gridPaint.getColor();
+        final int inactiveColor = inactiveTextPaint.getColor();
+        if(staticLayer == null || !staticLayer.matches(geometry, backgroundColor, squareColor,
+                gridColor, inactiveColor, mShowGridBackground, mShowGrid)) {
+            staticLayer = StaticLayer.obtain(staticLayer, width, height);
+            if(staticLayer == null)
+                return false;
+
+            Canvas layerCanvas = staticLayer.begin(geometry, backgroundColor, squareColor,
+                    gridColor, inactiveColor, mShowGridBackground, mShowGrid);
+            drawBackground(layerCanvas, width, height);
+            final Path[] paths = geometry.paths;
+            for (int i = 0; i < paths.length; i++) {
+                layerCanvas.drawPath(paths[i], inactiveTextPaint);
+            }
         }
+        canvas.drawBitmap(staticLayer.bitmap, 0, 0, null);
+        return true;
     }
 
     /**
-     * Setea los valores necesarios para dibujar los numeros, en base al espacio disponible para dibujar
-     * @param availableWidth ancho disponible para dibujar
-     * @param availableHeight alto disponible para dibujar
+     * Dibuja solo los segmentos activos, encima de la capa estatica
      */
-    private void setupGrid(float availableWidth, float availableHeight){
-        canvasSize = Math.min(
-                availableWidth - getPaddingLeft() - getPaddingRight(),
-                availableHeight - getPaddingTop() - getPaddingTop());
-        if(canvasSize < 0)
-            canvasSize = 0;
-        nColumns = 18 + (cellPadding * 2);
-        cellSize = canvasSize / nColumns * 1.0f;
-        horizontalOffset = getPaddingLeft() + (getMeasuredWidth() - canvasSize) / 2;
-        verticalOffset = getPaddingTop() + (getMeasuredHeight() - canvasSize) / 2;
+    private void drawActiveSegments(Canvas canvas){
+        if(mRenderMode == RENDER_SEGMENTS || !geometry.hasMergedPaths()) {
+            final Path[] paths = geometry.paths;
+            for (int i = 0; i < paths.length; i++) {
+                if(ClockFormat.isActive(activeMask, i))
+                    canvas.drawPath(paths[i], activeTextPaint);
+            }
+        }else {
+            //el atlas incluye los segmentos inactivos, asi que sobre la capa se usa el path combinado
+            canvas.drawPath(geometry.activePathForUnits(displayedUnits), activeTextPaint);
+        }
     }
 
-    private void paintGrid(Canvas canvas){
-        float w = horizontalOffset, h = verticalOffset;
-        while (w < canvasSize + horizontalOffset){
-            canvas.drawLine(w,verticalOffset,w,canvasSize + verticalOffset, gridPaint);
-            w+= cellSize;
-        }
-        while (h < canvasSize + verticalOffset){
-            canvas.drawLine(horizontalOffset,h,canvasSize + horizontalOffset,h, gridPaint);
-            h+= cellSize;
+    /**
+     * Dibuja cada segmento con su nivel en el fundido en curso. Los que ya llegaron a su estado
+     * final usan los Paints de la paleta, y los que estan cambiando {@link #fadePaint}
+     * @param overInactive true si los segmentos inactivos ya estan dibujados en la capa estatica;
+     *                     en ese caso solo se dibuja el color activo, con opacidad segun el nivel
+     */
+    private void drawFadingSegments(Canvas canvas, boolean overInactive){
+        final int activeColor = activeTextPaint.getColor();
+        final int inactiveColor = inactiveTextPaint.getColor();
+        final Path[] paths = geometry.paths;
+        for (int i = 0; i < paths.length; i++) {
+            float level = fade.level(i);
+            Paint pathPaint;
+            if(level >= 1f) {
+                pathPaint = activeTextPaint;
+            }else if(level <= 0f) {
+                if(overInactive)
+                    continue;
+                pathPaint = inactiveTextPaint;
+            }else {
+                fadePaint.setColor(overInactive
+                        ? SegmentFade.blend(activeColor & 0x00FFFFFF, activeColor, level)
+                        : SegmentFade.blend(inactiveColor, activeColor, level));
+                pathPaint = fadePaint;
+            }
+            canvas.drawPath(paths[i], pathPaint);
         }
     }
 
-    private class ClockPath{
-        Path path;
-        boolean isActive;
+    /**
+     * Activa un fundido de los segmentos que cambian, por ejemplo de 150 ms. Mientras dura se
+     * piden frames al {@link android.view.Choreographer}; cuando termina no se pide ninguno mas,
+     * asi que un reloj quieto no tiene costo. Requiere API 16; en versiones anteriores los
+     * segmentos cambian de golpe
+     * @param millis duracion del fundido, o 0 para desactivarlo
+     */
+    public void setTransitionDuration(long millis){
+        fade.setDurationMillis(millis);
+        if(millis <= 0)
+            finishFade();
+    }
 
-        ClockPath(Path path, boolean isActive) {
-            this.path = path;
-            this.isActive = isActive;
-        }
+    public long getTransitionDuration(){
+        return fade.getDurationMillis();
+    }
+
+    /**
+     * Activa una capa estatica con el fondo, la grilla y los segmentos inactivos, de forma que en
+     * cada tick solo se dibujan los segmentos activos. Los segmentos activos se dibujan encima de
+     * los inactivos, por lo que el color activo deberia ser opaco.
+     */
+    public void setStaticLayerEnabled(boolean enabled){
+        if(mStaticLayerEnabled == enabled)
+            return;
+        mStaticLayerEnabled = enabled;
+        if(!enabled)
+            staticLayer = null;
+        invalidate();
     }
 
-    private class GridPoint{
-        int x, y;
+    /**
+     * Dibuja cada digito copiandolo desde el atlas de digitos
+     * @return false si no se pudo obtener un atlas para el tamaño actual
+     */
+    private boolean drawDigitsFromAtlas(Canvas canvas){
+        int activeColor = activeTextPaint.getColor();
+        int inactiveColor = inactiveTextPaint.getColor();
+        if(digitAtlas == null || !digitAtlas.matches(geometry.cellSize, activeColor, inactiveColor)) {
+            digitAtlas = DigitAtlasCache.obtain(geometry.cellSize, activeColor, inactiveColor);
+            if(digitAtlas == null)
+                return false;
+        }
 
-        GridPoint(int x, int y) {
-            this.x = x;
-            this.y = y;
+        float top = geometry.digitTop() - DigitAtlas.GLYPH_MARGIN;
+        for(int position = 0, digits = displayedFormat.getDigits(); position < digits; position++){
+            float left = geometry.digitLeft(position) - DigitAtlas.GLYPH_MARGIN;
+            atlasDestination.set(left, top, left + digitAtlas.glyphWidth, top + digitAtlas.glyphHeight);
+            int glyph = displayedFormat.digitAt(displayedUnits, position);
+            canvas.drawBitmap(digitAtlas.bitmap, digitAtlas.glyphBounds(glyph), atlasDestination, null);
         }
+        drawSeparators(canvas);
+        return true;
     }
 
     /**
-     * Create paths that when together, allow us to represent a number
-     */
-    private @NonNull List<ClockPath> initNumberPaths(){
-        List<ClockPath> paths = new ArrayList<>();
-        int nDigits = 2;
-        for(int i=0; i < nDigits; i++){
-            int column = i * 10;
-            //A
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,3),
-                    new GridPoint(8,3),
-                    new GridPoint(6,5),
-                    new GridPoint(2,5)));
-            //B
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,3),
-                    new GridPoint(0,9),
-                    new GridPoint(2,8),
-                    new GridPoint(2,5)));
-            //C
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(8,3),
-                    new GridPoint(8,9),
-                    new GridPoint(6,8),
-                    new GridPoint(6,5)));
-            //D
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,9),
-                    new GridPoint(2,8),
-                    new GridPoint(6,8),
-                    new GridPoint(8,9),
-                    new GridPoint(6,10),
-                    new GridPoint(2,10)));
-            //E
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(0,9),
-                    new GridPoint(0,15),
-                    new GridPoint(2,13),
-                    new GridPoint(2,10)));
-            //F
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(8,9),
-                    new GridPoint(8,15),
-                    new GridPoint(6,13),
-                    new GridPoint(6,10)));
-            //G
-            paths.add(createPath(column,cellSize,
-                    new GridPoint(8,15),
-                    new GridPoint(0,15),
-                    new GridPoint(2,13),
-                    new GridPoint(6,13)));
+     * Dibuja cada digito copiandolo desde la hoja de sprites generada en el build
+     * @return false si no hay hoja, si sus colores no son los de la paleta actual, o si habria que
+     * ampliar los glifos
+     */
+    private boolean drawDigitsFromSprites(Canvas canvas){
+        SpriteSheet sheet = SpriteSheet.get(getContext());
+        if(sheet == null || !sheet.matches(activeTextPaint.getColor(), inactiveTextPaint.getColor())
+                || !sheet.covers(geometry.cellSize))
+            return false;
+
+        final SpriteSheetIndex index = sheet.index;
+        final float scale = geometry.cellSize / index.cellSize;
+        final float glyphWidth = index.glyphWidth * scale;
+        final float glyphHeight = index.glyphHeight * scale;
+        final float margin = index.margin * scale;
+        float top = geometry.digitTop() - margin;
+        for(int position = 0, digits = displayedFormat.getDigits(); position < digits; position++){
+            float left = geometry.digitLeft(position) - margin;
+            atlasDestination.set(left, top, left + glyphWidth, top + glyphHeight);
+            int glyph = displayedFormat.digitAt(displayedUnits, position);
+            canvas.drawBitmap(sheet.bitmap, sheet.glyphBounds(glyph), atlasDestination, SpriteSheet.PAINT);
         }
+        drawSeparators(canvas);
+        return true;
+    }
 
-        return paths;
+    /**
+     * Dibuja todos los segmentos con un solo drawVertices. Los vertices son los de la geometria,
+     * compartidos; solo se reescriben los colores de los segmentos que cambiaron desde el ultimo
+     * frame, o todos si cambio la geometria o la paleta
+     */
+    private void drawSegmentsAsVertices(Canvas canvas){
+        final SegmentMesh mesh = geometry.mesh();
+        final int activeColor = activeTextPaint.getColor();
+        final int inactiveColor = inactiveTextPaint.getColor();
+        if(mesh != coloredMesh || activeColor != coloredActiveColor || inactiveColor != coloredInactiveColor) {
+            if(vertexColors == null || vertexColors.length < mesh.vertexCount)
+                vertexColors = new int[mesh.vertexCount];
+            mesh.writeColors(vertexColors, activeMask, SegmentMesh.ALL_SEGMENTS, activeColor, inactiveColor);
+            coloredMesh = mesh;
+            coloredActiveColor = activeColor;
+            coloredInactiveColor = inactiveColor;
+            coloredMask = activeMask;
+        }else if(coloredMask != activeMask) {
+            mesh.writeColors(vertexColors, activeMask, coloredMask ^ activeMask, activeColor, inactiveColor);
+            coloredMask = activeMask;
+        }
+        canvas.drawVertices(Canvas.VertexMode.TRIANGLES, mesh.vertices.length, mesh.vertices, 0,
+                null, 0, vertexColors, 0, null, 0, 0, verticesPaint);
     }
 
     /**
-     * Crear un path con uno o mas puntos
-     * @param startingColumn columna en la que se comienza a dibujar el path
-     * @param cellSize el tamaño de una celda de la grilla
-     * @param startingPoint punto en el que se comienza a dibujar el path
-     * @param nextPoints los siguientes puntos sobre los cuales se dibujara el path
+     * Antes de API 29 drawVertices no se dibuja con aceleracion por hardware, asi que mientras se
+     * usa {@link #RENDER_VERTICES} el reloj se dibuja en una capa de software. La capa se quita
+     * al cambiar de modo, solo si la puso el reloj
      */
-    private ClockPath createPath(int startingColumn,
-                                 float cellSize,
-                                 GridPoint startingPoint,
-                                 GridPoint... nextPoints){
-        float offset = startingColumn * cellSize;
-        Path path = new Path();
-        path.moveTo(offset + (startingPoint.x + cellPadding) * cellSize + horizontalOffset,
-                (startingPoint.y + cellPadding) * cellSize + verticalOffset);
+    private void updateLayerType(){
+        boolean needsSoftware = mRenderMode == RENDER_VERTICES
+                && Build.VERSION.SDK_INT < HARDWARE_VERTICES_API;
+        if(needsSoftware == softwareLayerForVertices)
+            return;
+        softwareLayerForVertices = needsSoftware;
+        if(needsSoftware)
+            setLayerType(LAYER_TYPE_SOFTWARE, null);
+        else if(getLayerType() == LAYER_TYPE_SOFTWARE)
+            setLayerType(LAYER_TYPE_NONE, null);
+    }
 
-        for(GridPoint point : nextPoints){
-            path.lineTo(offset + (point.x + cellPadding) * cellSize + horizontalOffset,
-                    (point.y + cellPadding)  * cellSize + verticalOffset);
+    /**
+     * Los separadores no estan en el atlas ni en la hoja de sprites, y siempre estan activos
+     */
+    private void drawSeparators(Canvas canvas){
+        final Path[] paths = geometry.paths;
+        for (int i = 0; i < paths.length; i++) {
+            if(displayedFormat.isSeparator(i))
+                canvas.drawPath(paths[i], activeTextPaint);
         }
-        return new ClockPath(path,false);
     }
 
+    /**
+     * Cambia la forma en la que se dibujan los segmentos
+     * @param renderMode {@link #RENDER_SEGMENTS}, {@link #RENDER_MERGED}, {@link #RENDER_ATLAS},
+     *                   {@link #RENDER_SPRITES} o {@link #RENDER_VERTICES}
+     */
+    public void setRenderMode(@RenderMode int renderMode){
+        if(mRenderMode == renderMode)
+            return;
+        mRenderMode = renderMode;
+        updateLayerType();
+        prepareMergedPaths();
+        invalidate();
+    }
 
-    private final static int A = 0, B = 1, C = 2, D = 3, E = 4, F = 5, G = 6;
     /**
-     * Actualiza el estado de cada path para que muestre el numero que se quiere mostrar
-     * @param paths sobre los cuales se aplicará el cambio de estado
-     * @param number Numero que se quiere mostrar
+     * Cambia el formato con el que se muestra el tiempo, por ejemplo {@link ClockFormat#MINUTES_SECONDS}.
+     * El tiempo restante no cambia; si es mayor al maximo del formato, se muestra el maximo
      */
-    private void updatePathsStatesForNumber(List<ClockPath> paths, int number){
-        if(number < 0 || number > 24)
+    public void setFormat(ClockFormat format){
+        if(mFormat == format)
             return;
+        mFormat = format;
+        onFormatChanged();
+    }
 
-        for (ClockPath path : paths){
-            path.isActive = false;
-        }
+    public ClockFormat getFormat(){
+        return mFormat;
+    }
 
-        int digitIndex = 0;
-        do{
-            int digit = number % 10;
-            number /= 10;
+    /**
+     * Muestra decimas cuando quedan menos de {@code thresholdMillis}, por ejemplo 5 segundos como
+     * en un reloj de posesion. Mientras se muestran decimas, el valor se actualiza en el primer frame
+     * posterior a cada limite de 100 ms, usando frame callbacks del Choreographer (o el handler en
+     * dispositivos anteriores a API 16).
+     * @param thresholdMillis tiempo restante desde el que se muestran decimas, o 0 para desactivarlas
+     * @param tenthsFormat formato con decimas, por ejemplo {@link ClockFormat#SECOND_TENTHS}. No
+     *                     puede tener mas columnas que el formato del reloj
+     */
+    public void setTenths(long thresholdMillis, ClockFormat tenthsFormat){
+        if(tenthsFormat.getColumns() > mFormat.getColumns())
+            throw new IllegalArgumentException(
+                    "The tenths format " + tenthsFormat + " is wider than " + mFormat);
+        if(mTenthsThresholdMillis == thresholdMillis && mTenthsFormat == tenthsFormat)
+            return;
+        mTenthsThresholdMillis = Math.max(0, thresholdMillis);
+        mTenthsFormat = tenthsFormat;
+        timer.setFrameTicksBelow(mTenthsThresholdMillis);
+        onFormatChanged();
+    }
 
-            switch (digit){
-                case 0:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,C,E,F,G);
-                    break;
-                case 1:
-                    updatePathsForSingleDigit(paths,digitIndex,C,F);
-                    break;
-                case 2:
-                    updatePathsForSingleDigit(paths,digitIndex,A,C,D,E,G);
-                    break;
-                case 3:
-                    updatePathsForSingleDigit(paths,digitIndex,A,C,D,F,G);
-                    break;
-                case 4:
-                    updatePathsForSingleDigit(paths,digitIndex,B,D,C,F);
-                    break;
-                case 5:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,D,F,G);
-                    break;
-                case 6:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,D,F,G,E);
-                    break;
-                case 7:
-                    updatePathsForSingleDigit(paths,digitIndex,A,C,F);
-                    break;
-                case 8:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,C,D,E,F,G);
-                    break;
-                case 9:
-                    updatePathsForSingleDigit(paths,digitIndex,A,B,C,D,F);
-                    break;
-                default:
-                    updatePathsForSingleDigit(paths,digitIndex);
-            }
-            digitIndex++;
-        }while (number > 0);
+    public long getTenthsThresholdMillis(){
+        return mTenthsThresholdMillis;
+    }
 
+    /**
+     * @return retraso de cada cambio del valor mostrado respecto del instante exacto en el que
+     * deberia haber cambiado, desde el ultimo {@link #start()}
+     */
+    public LagStats getDisplayLag(){
+        return displayLag;
     }
 
     /**
-     * Actualiza el estado de cada path correspondiente a un solo digito. Asume que
-     * cada digito está conformado por 7 paths
-     * @param paths
-     * @param digitIndex Numero de digito empezando de la derecha. Por ejemplo, si el numero es "123",
-     *                   3 -> digitIndex: 0
-     *                   2 -> digitIndex: 1
-     *                   1 -> digitIndex: 2
-     * @param activeIndexes Indice de los paths que deberian estar activos
+     * Activa o desactiva las metricas de rendimiento del reloj. Desactivadas no tienen costo;
+     * activadas, cada draw, measure, tick e invalidacion se registra sin crear objetos
      */
-    private void updatePathsForSingleDigit(List<ClockPath> paths, int digitIndex, int... activeIndexes){
-        //O(m * n)
-        int offset = paths.size() - (digitIndex + 1) * 7;
-        if(offset < 0)
+    public void setMetricsEnabled(boolean enabled){
+        if(enabled == (metrics != null))
             return;
-        for(int i=0; i < 7; i++){
-            ClockPath path = paths.get(offset + i);
-            for(int active : activeIndexes){
-                if(i == active){
-                    path.isActive = true;
-                    break;
-                }
-                path.isActive = false;
-            }
+        metrics = enabled ? new ClockMetrics() : null;
+    }
+
+    /**
+     * @return metricas desde que se activaron o desde el ultimo {@link ClockMetrics#reset()}, o
+     * null si estan desactivadas (ver {@link #setMetricsEnabled(boolean)})
+     */
+    public @Nullable ClockMetrics getMetrics(){
+        return metrics;
+    }
+
+    private void onFormatChanged(){
+        updateSegmentStates();
+        if(countdown.isRunning())
+            timer.refresh();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Setea los valores necesarios para dibujar los numeros, en base al espacio disponible para dibujar
+     * @param availableWidth ancho disponible para dibujar
+     * @param availableHeight alto disponible para dibujar
+     */
+    private void setupGrid(float availableWidth, float availableHeight){
+        grid.setup(availableWidth, availableHeight,
+                getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom(),
+                cellPadding, mFormat);
+    }
+
+    private void paintGrid(Canvas canvas){
+        final float horizontalOffset = grid.getHorizontalOffset(), verticalOffset = grid.getVerticalOffset();
+        final float gridWidth = grid.getWidth(), gridHeight = grid.getHeight(), cellSize = grid.getCellSize();
+        float w = horizontalOffset, h = verticalOffset;
+        while (w < gridWidth + horizontalOffset){
+            canvas.drawLine(w,verticalOffset,w,gridHeight + verticalOffset, gridPaint);
+            w+= cellSize;
+        }
+        while (h < gridHeight + verticalOffset){
+            canvas.drawLine(horizontalOffset,h,gridWidth + horizontalOffset,h, gridPaint);
+            h+= cellSize;
         }
     }
 
+    /**
+     * Actualiza el estado de los segmentos para que muestren el tiempo restante
+     */
+    private void updateSegmentStates(){
+        displayedFormat = formatFor(mCurrentMillis);
+        displayedUnits = displayedFormat.unitsFor(mCurrentMillis);
+        activeMask = displayedFormat.maskFor(displayedUnits);
+        selectGeometry();
+        finishFade();
+    }
+
+    /**
+     * @return formato con el que se muestra un tiempo restante
+     */
+    private ClockFormat formatFor(long remainingMillis){
+        if(mTenthsThresholdMillis > 0 && remainingMillis <= mTenthsThresholdMillis)
+            return mTenthsFormat;
+        return mFormat;
+    }
+
+    private void selectGeometry(){
+        geometry = displayedFormat == mTenthsFormat && tenthsGeometry != null ? tenthsGeometry : formatGeometry;
+    }
+
     //endregion
 
     //region //Timer manager
 
+    private ClockTimer timer;
+    /**
+     * La cuenta regresiva de {@link #timer}, solo para leerla
+     */
+    private Countdown countdown;
+    private final LagStats displayLag = new LagStats();
+    private ClockMetrics metrics;
+
     @Override
     public void start() {
-        updateClock();
+        if(!countdown.isRunning())
+            displayLag.reset();
+        timer.start();
     }
 
     @Override
     public void stop() {
-        removeCallbacks(updateRunnable);
+        timer.stop();
     }
 
     @Override
     public void reset() {
-        mCurrentNumber = 0;
+        timer.reset();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        //el tema pudo cambiar mientras el reloj no estaba en una ventana
+        ClockThemes.addListener(themeListener);
+        if(selectPalette())
+            invalidate();
+        timer.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        ClockThemes.removeListener(themeListener);
+        timer.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        //puede llamarse antes de que se cree el timer
+        if(timer != null)
+            timer.onVisibilityChanged();
     }
 
-    private Runnable updateRunnable = new Runnable() {
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if(timer != null)
+            timer.onVisibilityChanged();
+    }
+
+    private final ClockTimer.TickListener tickListener = new ClockTimer.TickListener() {
+        @Override
+        public void onTick(long now, long scheduledTime) {
+            if(metrics != null && scheduledTime != ClockTicker.NO_DEADLINE)
+                metrics.recordTickLateness(now - scheduledTime);
+        }
+
+        @Override
+        public void onScheduled(long deadline) {
+            //los frames del fundido solo se piden si el reloj se ve
+            if(timer.isVisible())
+                requestFadeFrame();
+            else
+                finishFade();
+        }
+    };
+
+    private final ClockTicker.Callback fadeCallback = new ClockTicker.Callback() {
         @Override
-        public void run() {
-            updateClock();
+        public long onTick(long frameTime) {
+            //si un frame del fundido se paso del presupuesto, el fundido termina en este frame
+            updateFade(fadeOverBudget ? Long.MAX_VALUE : frameTime);
+            fadeOverBudget = false;
+            requestFadeFrame();
+            return ClockTicker.NO_DEADLINE;
         }
     };
 
-    private void updateClock() {
-        if(mCurrentNumber > 0) {
-            mCurrentNumber--;
+    /**
+     * Avanza el fundido e invalida los digitos que estan cambiando
+     * @return true si el fundido sigue en curso
+     */
+    @VisibleForTesting
+    boolean updateFade(long frameTime){
+        long changing = fade.getChangingMask();
+        boolean running = fade.update(frameTime);
+        if(changing != 0)
+            invalidateChangedDigits(0, changing);
+        return running;
+    }
+
+    /**
+     * Pide el siguiente frame mientras haya un fundido en curso; sin fundido no se programa nada
+     */
+    private void requestFadeFrame(){
+        if(!fade.isRunning() || !timer.isVisible())
+            return;
+        if(fadeTicker == null)
+            fadeTicker = new VsyncTicker(fadeCallback);
+        if(!fadeTicker.isScheduled())
+            fadeTicker.schedule(SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Termina el fundido en curso, dejando los segmentos en su estado final
+     */
+    private void finishFade(){
+        if(fade.isRunning())
             invalidate();
+        fade.jumpTo(activeMask);
+        fadeOverBudget = false;
+        if(fadeTicker != null)
+            fadeTicker.cancel();
+    }
+
+    /**
+     * Actualiza el numero que se muestra, registrando el retraso de cada cambio
+     * @return instante en el que se debe volver a actualizar, o {@link ClockTicker#NO_DEADLINE}
+     */
+    @VisibleForTesting
+    long updateClock(long now) {
+        return timer.update(now, true);
+    }
+
+    private final ClockTimer.Display display = new ClockTimer.Display() {
+        @Override
+        public void showRemaining(long now, long remainingMillis, boolean fromTick) {
+            showClock(now, remainingMillis, fromTick);
+        }
+
+        @Override
+        public long nextTickTime(long now) {
+            return OptimizedClockView.this.nextTickTime(now);
+        }
+    };
 
-            if(mCurrentNumber != 0) {
-                //sigue actualizando
-                postDelayed(updateRunnable, 1000L);
-            }else{
-                //suena la vocina
-                MediaPlayer mp = MediaPlayer.create(getContext(), R.raw.buzzer);
-                mp.start();
+    /**
+     * @param fromTick false si se actualiza por un cambio de estado (start, reset, formato), en
+     *                 cuyo caso el cambio no tiene un instante ideal y no se registra su retraso
+     */
+    private void showClock(long now, long remainingMillis, boolean fromTick) {
+        mCurrentMillis = remainingMillis;
+        ClockFormat format = formatFor(mCurrentMillis);
+        long units = format.unitsFor(mCurrentMillis);
+        if(format != displayedFormat || units != displayedUnits) {
+            long previousMask = activeMask;
+            boolean formatChanged = format != displayedFormat;
+            displayedFormat = format;
+            displayedUnits = units;
+            activeMask = format.maskFor(units);
+            if(fromTick && countdown.isRunning()) {
+                //el valor debio cambiar cuando el tiempo restante llego a units * resolucion
+                displayLag.record(now - (countdown.getDeadline() - units * format.getResolutionMillis()));
+            }
+            if(metrics != null)
+                metrics.recordInvalidation(now);
+            if(formatChanged) {
+                selectGeometry();
+                finishFade();
+                invalidate();
+            }else {
+                //los frames del fundido los pide quien programa el siguiente tick, solo si se ve
+                if(VsyncTicker.isSupported())
+                    fade.animateTo(activeMask, now);
+                else
+                    fade.jumpTo(activeMask);
+                invalidateChangedDigits(previousMask, activeMask);
             }
         }
+
+        if(warningPalette != null && selectPalette())
+            invalidate();
+    }
+
+    /**
+     * @return instante en el que cambia el valor mostrado: el siguiente limite de segundo (o de
+     * decima, si ya se muestran decimas), o el instante en el que se empiezan a mostrar decimas
+     */
+    private long nextTickTime(long now){
+        long next = countdown.nextChangeTime(now, displayedFormat.getResolutionMillis());
+        if(displayedFormat != mTenthsFormat && mTenthsThresholdMillis > 0) {
+            long tenthsStart = countdown.getDeadline() - mTenthsThresholdMillis;
+            if(tenthsStart > now && tenthsStart < next)
+                next = tenthsStart;
+        }
+        return next;
+    }
+
+    /**
+     * Invalida solo los digitos cuyos segmentos cambian entre un valor y otro
+     */
+    private void invalidateChangedDigits(long oldMask, long newMask){
+        if(geometry == null || geometry.format != displayedFormat) {
+            invalidate();
+            return;
+        }
+
+        dirtyRect.setEmpty();
+        for(int position = 0, digits = displayedFormat.getDigits(); position < digits; position++){
+            if(displayedFormat.digitChanged(oldMask, newMask, position))
+                dirtyRect.union(geometry.digitBounds[position]);
+        }
+        if(!dirtyRect.isEmpty())
+            invalidate(dirtyRect);
     }
 
     //endregion
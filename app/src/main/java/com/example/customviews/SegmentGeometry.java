@@ -0,0 +1,201 @@
+package com.example.customviews;
+
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.example.customviews.core.ClockFormat;
+import com.example.customviews.core.ClockGrid;
+import com.example.customviews.core.SegmentMesh;
+import com.example.customviews.core.SegmentShapes;
+import com.example.customviews.core.SevenSegment;
+
+/**
+ * Geometria inmutable de los segmentos de un reloj para un formato, tamaño, padding y offset dados.
+ * Como no guarda el estado de los segmentos, una misma instancia puede ser compartida por todos los
+ * relojes que tienen el mismo tamaño (ver {@link SegmentGeometryCache}).
+ */
+final class SegmentGeometry {
+
+    /**
+     * Los paths combinados por valor solo se generan para formatos con pocos valores posibles,
+     * como el de 24 segundos. Para los demas se dibuja segmento por segmento
+     */
+    static final long MAX_MERGED_VALUES = 100;
+
+    final ClockFormat format;
+    final int cellPadding;
+    final float horizontalOffset;
+    final float verticalOffset;
+    final float cellSize;
+    /**
+     * Un path por segmento, en el orden de los bits de {@link ClockFormat#maskFor(long)}
+     */
+    final Path[] paths;
+    /**
+     * Rectangulo que cubre los segmentos de cada digito, incluyendo el anti-aliasing
+     */
+    final Rect[] digitBounds;
+
+    private final ClockGrid grid = new ClockGrid();
+    private Path[] activeValuePaths;
+    private Path[] inactiveValuePaths;
+    private SegmentMesh mesh;
+
+    SegmentGeometry(ClockFormat format, float cellSize, int cellPadding, float horizontalOffset, float verticalOffset) {
+        this.format = format;
+        this.cellPadding = cellPadding;
+        this.horizontalOffset = horizontalOffset;
+        this.verticalOffset = verticalOffset;
+        this.grid.set(format, cellSize, cellPadding, horizontalOffset, verticalOffset);
+        this.cellSize = grid.getCellSize();
+        this.paths = initNumberPaths();
+        this.digitBounds = initDigitBounds();
+    }
+
+    /**
+     * @return true si ya se crearon los paths combinados (ver {@link #prepareMergedPaths()}), y se
+     * pueden usar {@link #activePathForUnits(long)} y {@link #inactivePathForUnits(long)}
+     */
+    boolean hasMergedPaths(){
+        return activeValuePaths != null;
+    }
+
+    /**
+     * @param units valor entre 0 y {@link ClockFormat#getMaxUnits()}
+     * @return un solo path con todos los segmentos activos del valor, o null si no hay paths
+     * combinados (ver {@link #hasMergedPaths()})
+     */
+    @Nullable Path activePathForUnits(long units){
+        if(activeValuePaths == null)
+            return null;
+        return activeValuePaths[(int) units];
+    }
+
+    /**
+     * @param units valor entre 0 y {@link ClockFormat#getMaxUnits()}
+     * @return un solo path con todos los segmentos inactivos del valor, o null si no hay paths
+     * combinados (ver {@link #hasMergedPaths()})
+     */
+    @Nullable Path inactivePathForUnits(long units){
+        if(inactiveValuePaths == null)
+            return null;
+        return inactiveValuePaths[(int) units];
+    }
+
+    /**
+     * Combina los segmentos de cada valor en un path activo y otro inactivo, si el formato tiene
+     * menos de {@link #MAX_MERGED_VALUES} valores. Solo lo piden los relojes que dibujan con paths
+     * combinados, fuera de onDraw (al medir o al cambiar de modo), y se hace una sola vez por
+     * geometria: las demas llamadas no hacen nada
+     */
+    void prepareMergedPaths(){
+        if(activeValuePaths != null || format.getMaxUnits() >= MAX_MERGED_VALUES)
+            return;
+        int nValues = (int) format.getMaxUnits() + 1;
+        activeValuePaths = new Path[nValues];
+        inactiveValuePaths = new Path[nValues];
+        for(int units = 0; units < nValues; units++){
+            long mask = format.maskFor(units);
+            Path activePath = new Path();
+            Path inactivePath = new Path();
+            for(int i = 0; i < paths.length; i++){
+                if(ClockFormat.isActive(mask, i))
+                    activePath.addPath(paths[i]);
+                else
+                    inactivePath.addPath(paths[i]);
+            }
+            activeValuePaths[units] = activePath;
+            inactiveValuePaths[units] = inactivePath;
+        }
+    }
+
+    /**
+     * @return todos los segmentos como una sola malla de triangulos, con las mismas coordenadas
+     * que {@link #paths}. Se crea la primera vez que se pide
+     */
+    @NonNull SegmentMesh mesh(){
+        if(mesh == null)
+            mesh = new SegmentMesh(grid);
+        return mesh;
+    }
+
+    /**
+     * @param position posicion del digito, empezando de la izquierda y sin contar separadores
+     * @return coordenada x del borde izquierdo del digito
+     */
+    float digitLeft(int position){
+        return grid.digitLeft(position);
+    }
+
+    /**
+     * @return coordenada y del borde superior de los digitos
+     */
+    float digitTop(){
+        return grid.digitTop();
+    }
+
+    private @NonNull Rect[] initDigitBounds(){
+        Rect[] bounds = new Rect[format.getDigits()];
+        float top = digitTop();
+        float bottom = top + SegmentShapes.DIGIT_HEIGHT * cellSize;
+        for(int i = 0; i < bounds.length; i++){
+            float left = digitLeft(i);
+            float right = left + SegmentShapes.DIGIT_WIDTH * cellSize;
+            bounds[i] = new Rect(
+                    (int) Math.floor(left) - 1,
+                    (int) Math.floor(top) - 1,
+                    (int) Math.ceil(right) + 1,
+                    (int) Math.ceil(bottom) + 1);
+        }
+        return bounds;
+    }
+
+    /**
+     * Create paths that when together, allow us to represent a number
+     */
+    private @NonNull Path[] initNumberPaths(){
+        float[] points = new float[format.coordinateCount()];
+        int[] starts = new int[format.getSegments() + 1];
+        grid.fillSegments(points, starts);
+
+        Path[] paths = new Path[format.getSegments()];
+        for(int i = 0; i < paths.length; i++){
+            paths[i] = createPath(points, starts[i], starts[i + 1]);
+        }
+        return paths;
+    }
+
+    /**
+     * Crea los 7 paths de un digito
+     * @param out arreglo en el que se guardan los paths, en el orden A..G
+     * @param outOffset posicion de {@code out} en la que se guarda el segmento A
+     * @param left coordenada x de la columna 0 del digito
+     * @param top coordenada y de la fila 0 de la grilla
+     * @param cellSize el tamaño de una celda de la grilla
+     */
+    static void createDigitPaths(Path[] out, int outOffset, float left, float top, float cellSize){
+        float[] points = new float[2 * SegmentShapes.POINTS_PER_DIGIT];
+        for(int segment = 0; segment < SevenSegment.SEGMENTS_PER_DIGIT; segment++){
+            int length = SegmentShapes.fillSegment(points, 0, segment, left, top, cellSize);
+            out[outOffset + segment] = createPath(points, 0, length);
+        }
+    }
+
+    /**
+     * Crear un path con uno o mas puntos
+     * @param points coordenadas (x, y) de los puntos sobre los cuales se dibujara el path
+     * @param start posicion de {@code points} en la que empieza el path
+     * @param end posicion de {@code points} en la que termina el path, sin incluirla
+     */
+    private static Path createPath(float[] points, int start, int end){
+        Path path = new Path();
+        path.moveTo(points[start], points[start + 1]);
+
+        for(int i = start + 2; i < end; i += 2){
+            path.lineTo(points[i], points[i + 1]);
+        }
+        return path;
+    }
+}
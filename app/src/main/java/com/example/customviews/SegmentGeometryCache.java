@@ -0,0 +1,94 @@
+package com.example.customviews;
+
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+
+import com.example.customviews.core.ClockFormat;
+import com.example.customviews.core.ClockGrid;
+
+/**
+ * Cache compartida por todo el proceso con la geometria de los segmentos.
+ * Los relojes que tienen el mismo formato, tamaño, padding y offset reutilizan los mismos paths en lugar
+ * de crear cada uno los suyos. Se guardan como maximo {@link #MAX_ENTRIES} geometrias, y se
+ * descartan las que se usaron hace mas tiempo.
+ */
+final class SegmentGeometryCache {
+
+    static final int MAX_ENTRIES = 16;
+
+    private static final LruCache<Key, SegmentGeometry> cache = new LruCache<>(MAX_ENTRIES);
+
+    private SegmentGeometryCache() {
+    }
+
+    /**
+     * Devuelve la geometria de {@link ClockFormat#SECONDS} para un area cuadrada
+     */
+    static @NonNull SegmentGeometry obtain(float canvasSize,
+                                           int cellPadding,
+                                           float horizontalOffset,
+                                           float verticalOffset){
+        return obtain(ClockFormat.SECONDS, canvasSize / ClockGrid.columnsFor(cellPadding),
+                cellPadding, horizontalOffset, verticalOffset);
+    }
+
+    /**
+     * Devuelve la geometria para los parametros dados, creandola solo si no estaba en la cache
+     */
+    static @NonNull SegmentGeometry obtain(ClockFormat format,
+                                           float cellSize,
+                                           int cellPadding,
+                                           float horizontalOffset,
+                                           float verticalOffset){
+        Key key = new Key(format, cellSize, cellPadding, horizontalOffset, verticalOffset);
+        SegmentGeometry geometry = cache.get(key);
+        if(geometry == null){
+            geometry = new SegmentGeometry(format, cellSize, cellPadding, horizontalOffset, verticalOffset);
+            cache.put(key, geometry);
+        }
+        return geometry;
+    }
+
+    static void clear(){
+        cache.evictAll();
+    }
+
+    private static final class Key{
+        final ClockFormat format;
+        final float cellSize;
+        final int cellPadding;
+        final float horizontalOffset;
+        final float verticalOffset;
+
+        Key(ClockFormat format, float cellSize, int cellPadding, float horizontalOffset, float verticalOffset) {
+            this.format = format;
+            this.cellSize = cellSize;
+            this.cellPadding = cellPadding;
+            this.horizontalOffset = horizontalOffset;
+            this.verticalOffset = verticalOffset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            //los formatos son unicos por patron, asi que alcanza con comparar las instancias
+            return format == key.format
+                    && Float.compare(key.cellSize, cellSize) == 0
+                    && cellPadding == key.cellPadding
+                    && Float.compare(key.horizontalOffset, horizontalOffset) == 0
+                    && Float.compare(key.verticalOffset, verticalOffset) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = format.hashCode();
+            result = 31 * result + Float.floatToIntBits(cellSize);
+            result = 31 * result + cellPadding;
+            result = 31 * result + Float.floatToIntBits(horizontalOffset);
+            result = 31 * result + Float.floatToIntBits(verticalOffset);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.customviews;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+
+import com.example.customviews.core.SpriteSheetIndex;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Hoja de sprites con los digitos del reloj, generada en el build por {@code sprite-generator}
+ * para cada densidad ({@code R.drawable.clock_sprites} y su indice {@code R.raw.clock_sprites_index}).
+ * A diferencia de {@link DigitAtlas}, no se dibuja en tiempo de ejecucion: se decodifica una sola
+ * vez por proceso y la comparten todos los relojes.
+ *
+ * Los glifos solo tienen los colores por defecto, asi que un reloj con otros colores tiene que
+ * usar el atlas (ver {@link #matches(int, int)}). Tampoco se amplian: un reloj con celdas mas
+ * grandes que las de la hoja se veria borroso, asi que tambien usa el atlas (ver {@link #covers(float)}).
+ */
+@UiThread
+final class SpriteSheet {
+
+    /**
+     * Paint para copiar los glifos reducidos al tamaño de celda del reloj
+     */
+    static final Paint PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private static SpriteSheet instance;
+    private static boolean loaded;
+
+    final SpriteSheetIndex index;
+    final Bitmap bitmap;
+    private final Rect[] glyphBounds;
+
+    private SpriteSheet(SpriteSheetIndex index, Bitmap bitmap) {
+        this.index = index;
+        this.bitmap = bitmap;
+        this.glyphBounds = new Rect[index.glyphs];
+        for(int glyph = 0; glyph < index.glyphs; glyph++){
+            int left = index.glyphLeft(glyph);
+            int top = index.glyphTop(glyph);
+            glyphBounds[glyph] = new Rect(left, top, left + index.glyphWidth, top + index.glyphHeight);
+        }
+    }
+
+    /**
+     * Carga la hoja la primera vez que se pide
+     * @return la hoja, o null si no esta empaquetada o no se pudo leer
+     */
+    static @Nullable SpriteSheet get(@NonNull Context context){
+        if(!loaded) {
+            loaded = true;
+            instance = load(context.getApplicationContext().getResources());
+        }
+        return instance;
+    }
+
+    private static @Nullable SpriteSheet load(Resources resources){
+        try {
+            SpriteSheetIndex index;
+            InputStream in = resources.openRawResource(R.raw.clock_sprites_index);
+            try {
+                index = SpriteSheetIndex.read(new DataInputStream(in));
+            } finally {
+                in.close();
+            }
+            //el indice describe la hoja en pixeles, asi que no se debe escalar al decodificarla
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inScaled = false;
+            Bitmap bitmap = BitmapFactory.decodeResource(resources, R.drawable.clock_sprites, options);
+            if(bitmap == null || bitmap.getWidth() < index.sheetWidth() || bitmap.getHeight() < index.sheetHeight())
+                return null;
+            return new SpriteSheet(index, bitmap);
+        } catch (IOException | Resources.NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true si los glifos estan dibujados con esos colores
+     */
+    boolean matches(int activeColor, int inactiveColor){
+        return index.activeColor == activeColor && index.inactiveColor == inactiveColor;
+    }
+
+    /**
+     * @param cellSize tamaño en pixeles de una celda del reloj
+     * @return true si los glifos se pueden dibujar a ese tamaño sin ampliarlos
+     */
+    boolean covers(float cellSize){
+        return cellSize <= index.cellSize;
+    }
+
+    /**
+     * @param glyph digito entre 0 y 9, o {@link com.example.customviews.core.SevenSegment#BLANK}
+     * @return porcion de la hoja con el glifo, incluyendo el margen
+     */
+    Rect glyphBounds(int glyph){
+        return glyphBounds[glyph];
+    }
+}
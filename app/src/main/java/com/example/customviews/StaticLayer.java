@@ -0,0 +1,95 @@
+package com.example.customviews;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.support.annotation.Nullable;
+
+/**
+ * Bitmap del tamaño de la vista con todo lo que no cambia entre un tick y otro: el fondo, el
+ * cuadrado, la grilla y los segmentos inactivos. Guarda los parametros con los que se dibujo,
+ * para saber cuando hay que volver a dibujarlo.
+ */
+final class StaticLayer {
+
+    /**
+     * Tamaño maximo del bitmap. Si la vista es mas grande, se dibuja sin capa estatica
+     */
+    static final long MAX_BYTES = 16 * 1024 * 1024;
+
+    final Bitmap bitmap;
+    final Canvas canvas;
+
+    private SegmentGeometry geometry;
+    private int backgroundColor;
+    private int squareColor;
+    private int gridColor;
+    private int inactiveColor;
+    private boolean showSquare;
+    private boolean showGrid;
+    private boolean drawn;
+
+    private StaticLayer(int width, int height) {
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    /**
+     * Devuelve una capa del tamaño pedido, reutilizando la anterior si tiene el mismo tamaño
+     * @param previous capa que se usaba hasta ahora, puede ser null
+     * @return la capa, o null si el tamaño no es valido o es demasiado grande
+     */
+    static @Nullable StaticLayer obtain(@Nullable StaticLayer previous, int width, int height){
+        if(width <= 0 || height <= 0 || 4L * width * height > MAX_BYTES)
+            return null;
+        if(previous != null
+                && previous.bitmap.getWidth() == width
+                && previous.bitmap.getHeight() == height)
+            return previous;
+        return new StaticLayer(width, height);
+    }
+
+    /**
+     * @return true si la capa ya fue dibujada con estos parametros
+     */
+    boolean matches(SegmentGeometry geometry,
+                    int backgroundColor,
+                    int squareColor,
+                    int gridColor,
+                    int inactiveColor,
+                    boolean showSquare,
+                    boolean showGrid){
+        return drawn
+                && this.geometry == geometry
+                && this.backgroundColor == backgroundColor
+                && this.squareColor == squareColor
+                && this.gridColor == gridColor
+                && this.inactiveColor == inactiveColor
+                && this.showSquare == showSquare
+                && this.showGrid == showGrid;
+    }
+
+    /**
+     * Limpia el bitmap y guarda los parametros con los que se va a dibujar
+     * @return el canvas sobre el que se debe dibujar la capa
+     */
+    Canvas begin(SegmentGeometry geometry,
+                 int backgroundColor,
+                 int squareColor,
+                 int gridColor,
+                 int inactiveColor,
+                 boolean showSquare,
+                 boolean showGrid){
+        this.geometry = geometry;
+        this.backgroundColor = backgroundColor;
+        this.squareColor = squareColor;
+        this.gridColor = gridColor;
+        this.inactiveColor = inactiveColor;
+        this.showSquare = showSquare;
+        this.showGrid = showGrid;
+        this.drawn = true;
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        return canvas;
+    }
+}
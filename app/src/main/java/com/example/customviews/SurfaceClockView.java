@@ -0,0 +1,454 @@
+package com.example.customviews;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.AnyThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import com.example.customviews.core.ClockFormat;
+import com.example.customviews.core.ClockGrid;
+import com.example.customviews.core.Countdown;
+
+/**
+ * Reloj que se actualiza y se dibuja en su propio hilo de render, sobre la superficie de un
+ * {@link SurfaceView}. El hilo principal solo recibe los controles ({@link #start()},
+ * {@link #stop()}, {@link #reset()}) y los eventos de la superficie, asi que el reloj sigue
+ * avanzando y mostrandose a tiempo aunque el hilo principal este bloqueado cientos de
+ * milisegundos (scroll de una lista, GC, layout).
+ *
+ * El hilo de render programa sus propios ticks con un {@link Handler}, en el instante en el que
+ * cambia el valor mostrado, y en cada tick dibuja el reloj completo con la misma geometria que
+ * {@link OptimizedClockView}. Mientras no hay superficie (la vista o la ventana estan ocultas)
+ * solo se programa la llegada a cero, para la bocina.
+ *
+ * Usa los colores, la grilla, la separacion de los segmentos, el formato, el valor inicial y las
+ * decimas de su {@link ClockStyle}; no sigue los temas de {@link ClockThemes}.
+ */
+public class SurfaceClockView extends SurfaceView implements IClockView, SurfaceHolder.Callback {
+
+    private static final int MSG_RENDER = 1;
+    private static final int MSG_SURFACE_CHANGED = 2;
+
+    private final ClockStyle style;
+    private final int defaultSize;
+    private final int cellPadding;
+
+    /**
+     * Protege a {@link #countdown}, que se controla desde el hilo principal y se lee desde el
+     * hilo de render
+     */
+    private final Object stateLock = new Object();
+    private final Countdown countdown;
+
+    /**
+     * Protege el estado de la superficie. El hilo de render lo toma mientras dibuja, y
+     * {@link #surfaceDestroyed(SurfaceHolder)} espera a que termine antes de devolver la superficie
+     */
+    private final Object surfaceLock = new Object();
+    private boolean surfaceReady;
+    private int surfaceWidth;
+    private int surfaceHeight;
+    private int surfacePaddingLeft;
+    private int surfacePaddingTop;
+    private int surfacePaddingRight;
+    private int surfacePaddingBottom;
+
+    private final Renderer renderer;
+    private HandlerThread renderThread;
+    /**
+     * Handler del hilo de render mientras la vista esta en una ventana, o null. Se lee desde
+     * cualquier hilo en {@link #requestRender()}
+     */
+    private volatile Handler renderHandler;
+
+    /**
+     * Se carga y se devuelve en el hilo principal, y suena desde el hilo de render
+     */
+    private volatile Buzzer buzzer;
+
+    public SurfaceClockView(Context context) {
+        this(context, null);
+    }
+
+    public SurfaceClockView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        style = ClockStyle.fromAttributes(context, attrs);
+        defaultSize = (int) (200 * getContext().getResources().getDisplayMetrics().density);
+        cellPadding = style.cellPadding;
+        countdown = new Countdown(style.defaultMillis);
+        renderer = new Renderer(getHolder());
+        getHolder().addCallback(this);
+        if(!isInEditMode())
+            start();
+    }
+
+    public ClockStyle getStyle(){
+        return style;
+    }
+
+    //region //View overrides
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int defaultWidth = defaultSize * ClockGrid.columnsFor(cellPadding, style.format) / ClockGrid.rowsFor(cellPadding);
+        setMeasuredDimension(resolveSize(defaultWidth, widthMeasureSpec), resolveSize(defaultSize, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if(!isInEditMode()) {
+            buzzer = Buzzer.acquire(getContext());
+            renderThread = new HandlerThread("SurfaceClockView", Process.THREAD_PRIORITY_DISPLAY);
+            renderThread.start();
+            renderHandler = new Handler(renderThread.getLooper(), renderer);
+            requestRender();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        Handler handler = renderHandler;
+        if(handler != null) {
+            //descarta los ticks pendientes y termina el hilo
+            renderHandler = null;
+            handler.removeCallbacksAndMessages(null);
+            renderThread.quit();
+            renderThread = null;
+        }
+        if(buzzer != null) {
+            buzzer.release();
+            buzzer = null;
+        }
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (surfaceLock) {
+            surfaceReady = true;
+            surfaceWidth = width;
+            surfaceHeight = height;
+            surfacePaddingLeft = getPaddingLeft();
+            surfacePaddingTop = getPaddingTop();
+            surfacePaddingRight = getPaddingRight();
+            surfacePaddingBottom = getPaddingBottom();
+        }
+        Handler handler = renderHandler;
+        if(handler != null)
+            handler.sendEmptyMessage(MSG_SURFACE_CHANGED);
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        //si el hilo de render esta dibujando, se espera a que termine
+        synchronized (surfaceLock) {
+            surfaceReady = false;
+        }
+        requestRender();
+    }
+
+    //endregion
+
+    //region //Timer manager
+
+    @Override
+    @AnyThread
+    public void start() {
+        synchronized (stateLock) {
+            countdown.start(SystemClock.uptimeMillis());
+        }
+        requestRender();
+    }
+
+    @Override
+    @AnyThread
+    public void stop() {
+        synchronized (stateLock) {
+            countdown.stop(SystemClock.uptimeMillis());
+        }
+        requestRender();
+    }
+
+    @Override
+    @AnyThread
+    public void reset() {
+        synchronized (stateLock) {
+            countdown.reset(SystemClock.uptimeMillis());
+        }
+        requestRender();
+    }
+
+    /**
+     * Pide que se actualice el reloj en el hilo de render, reemplazando el tick programado
+     */
+    @AnyThread
+    private void requestRender(){
+        Handler handler = renderHandler;
+        if(handler != null) {
+            handler.removeMessages(MSG_RENDER);
+            handler.sendEmptyMessage(MSG_RENDER);
+        }
+    }
+
+    /**
+     * @return formato con el que se muestra un tiempo restante
+     */
+    private ClockFormat formatFor(long remainingMillis){
+        if(style.tenthsThresholdMillis > 0 && remainingMillis <= style.tenthsThresholdMillis)
+            return style.tenthsFormat;
+        return style.format;
+    }
+
+    @VisibleForTesting
+    Renderer getRenderer(){
+        return renderer;
+    }
+
+    /**
+     * @return looper del hilo de render, o null si la vista no esta en una ventana
+     */
+    @VisibleForTesting
+    @Nullable Looper getRenderLooper(){
+        HandlerThread thread = renderThread;
+        return thread != null ? thread.getLooper() : null;
+    }
+
+    //endregion
+
+    /**
+     * Lo que se hace en el hilo de render, que se crea cada vez que la vista se agrega a una
+     * ventana. Todo su estado, salvo lo que se lee con {@link #stateLock} y {@link #surfaceLock},
+     * se usa solo desde ese hilo
+     */
+    final class Renderer implements Handler.Callback {
+
+        private final SurfaceHolder holder;
+
+        private final Paint backgroundPaint;
+        private final Paint squarePaint;
+        private final Paint gridPaint;
+        private final Paint activeTextPaint;
+        private final Paint inactiveTextPaint;
+
+        private final ClockGrid grid = new ClockGrid();
+        private SegmentGeometry formatGeometry;
+        private SegmentGeometry tenthsGeometry;
+        private int width;
+        private int height;
+        /**
+         * Valor que se debe mostrar, calculado en {@link #update(long)}
+         */
+        ClockFormat format = style.format;
+        long units;
+        /**
+         * Instante en el que llega a cero la cuenta, mientras corre
+         */
+        private long deadline;
+        private ClockFormat drawnFormat;
+        private long drawnUnits;
+
+        Renderer(SurfaceHolder holder) {
+            this.holder = holder;
+            //Paints propios: los de la paleta se usan desde el hilo principal
+            ClockPalette palette = ClockPalette.of(style);
+            backgroundPaint = new Paint(palette.background);
+            squarePaint = new Paint(palette.square);
+            gridPaint = new Paint(palette.grid);
+            activeTextPaint = new Paint(palette.activeText);
+            inactiveTextPaint = new Paint(palette.inactiveText);
+        }
+
+        @Override
+        public boolean handleMessage(Message msg) {
+            switch (msg.what){
+                case MSG_SURFACE_CHANGED:
+                    updateGeometry();
+                    render(msg.getTarget());
+                    return true;
+                case MSG_RENDER:
+                    render(msg.getTarget());
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Vuelve a crear la geometria si cambio el tamaño de la superficie. Se crea en este hilo en
+         * lugar de usar {@link SegmentGeometryCache}, porque las geometrias compartidas crean su
+         * malla y sus paths combinados cuando las usa el hilo principal. Aca no se crean: cada
+         * frame se dibuja segmento por segmento
+         */
+        @VisibleForTesting
+        void updateGeometry(){
+            int paddingLeft, paddingTop, paddingRight, paddingBottom;
+            synchronized (surfaceLock) {
+                width = surfaceWidth;
+                height = surfaceHeight;
+                paddingLeft = surfacePaddingLeft;
+                paddingTop = surfacePaddingTop;
+                paddingRight = surfacePaddingRight;
+                paddingBottom = surfacePaddingBottom;
+            }
+            grid.setup(width, height, paddingLeft, paddingTop, paddingRight, paddingBottom,
+                    cellPadding, style.format);
+            //la superficie nueva no tiene nada dibujado
+            drawnFormat = null;
+            if(formatGeometry != null
+                    && formatGeometry.cellSize == grid.getCellSize()
+                    && formatGeometry.horizontalOffset == grid.getHorizontalOffset()
+                    && formatGeometry.verticalOffset == grid.getVerticalOffset())
+                return;
+
+            formatGeometry = new SegmentGeometry(style.format, grid.getCellSize(), cellPadding,
+                    grid.getHorizontalOffset(), grid.getVerticalOffset());
+            tenthsGeometry = null;
+            if(style.tenthsThresholdMillis > 0) {
+                //las decimas se dibujan sobre la misma grilla, centradas si tienen menos digitos
+                int extraColumns = ClockGrid.columnsFor(cellPadding, style.format)
+                        - ClockGrid.columnsFor(cellPadding, style.tenthsFormat);
+                tenthsGeometry = new SegmentGeometry(style.tenthsFormat, grid.getCellSize(), cellPadding,
+                        grid.getHorizontalOffset() + extraColumns / 2f * grid.getCellSize(),
+                        grid.getVerticalOffset());
+            }
+        }
+
+        /**
+         * Actualiza el valor, lo dibuja si cambio, y programa el siguiente tick: el siguiente cambio
+         * del valor, o solo la llegada a cero si no hay superficie
+         */
+        private void render(Handler handler){
+            long next = update(SystemClock.uptimeMillis());
+            boolean drawn = true;
+            if(format != drawnFormat || units != drawnUnits) {
+                drawn = drawOnSurface();
+                if(drawn) {
+                    drawnFormat = format;
+                    drawnUnits = units;
+                }
+            }
+
+            handler.removeMessages(MSG_RENDER);
+            if(next == ClockTicker.NO_DEADLINE)
+                return;
+            handler.sendEmptyMessageAtTime(MSG_RENDER, drawn ? next : deadline);
+        }
+
+        /**
+         * Calcula el valor que se debe mostrar y, si llego a cero, termina la cuenta y pide la bocina
+         * @return instante en el que se debe volver a actualizar, o {@link ClockTicker#NO_DEADLINE}
+         */
+        @VisibleForTesting
+        long update(long now){
+            long remaining;
+            long expiredAt = ClockTicker.NO_DEADLINE;
+            long next = ClockTicker.NO_DEADLINE;
+            synchronized (stateLock) {
+                remaining = countdown.remainingMillis(now);
+                deadline = countdown.getDeadline();
+                if(countdown.hasExpired(now)) {
+                    expiredAt = deadline;
+                    countdown.finish();
+                }else if(countdown.isRunning()) {
+                    next = nextTickTime(now, remaining);
+                }
+            }
+
+            format = formatFor(remaining);
+            units = format.unitsFor(remaining);
+
+            //la bocina suena desde este hilo, sin esperar al principal, que puede estar bloqueado
+            Buzzer current = buzzer;
+            if(expiredAt != ClockTicker.NO_DEADLINE && current != null)
+                current.play(expiredAt);
+            return next;
+        }
+
+        /**
+         * @return instante en el que cambia el valor mostrado, o en el que se empiezan a mostrar
+         * decimas
+         */
+        private long nextTickTime(long now, long remaining){
+            ClockFormat format = formatFor(remaining);
+            long next = countdown.nextChangeTime(now, format.getResolutionMillis());
+            if(format != style.tenthsFormat && style.tenthsThresholdMillis > 0) {
+                long tenthsStart = countdown.getDeadline() - style.tenthsThresholdMillis;
+                if(tenthsStart > now && tenthsStart < next)
+                    next = tenthsStart;
+            }
+            return next;
+        }
+
+        /**
+         * Dibuja el reloj completo, ya que la superficie no conserva el frame anterior
+         * @return false si no hay superficie
+         */
+        private boolean drawOnSurface(){
+            synchronized (surfaceLock) {
+                if(!surfaceReady || formatGeometry == null)
+                    return false;
+                Canvas canvas = holder.lockCanvas();
+                if(canvas == null)
+                    return false;
+                try {
+                    drawClock(canvas);
+                } finally {
+                    holder.unlockCanvasAndPost(canvas);
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Dibuja el valor calculado en {@link #update(long)}
+         */
+        @VisibleForTesting
+        void drawClock(Canvas canvas){
+            SegmentGeometry geometry = format == style.tenthsFormat && tenthsGeometry != null
+                    ? tenthsGeometry : formatGeometry;
+            drawBackground(canvas);
+            drawSegments(canvas, geometry, units);
+        }
+
+        private void drawBackground(Canvas canvas){
+            canvas.drawRect(0, 0, width, height, backgroundPaint);
+            final float horizontalOffset = grid.getHorizontalOffset(), verticalOffset = grid.getVerticalOffset();
+            final float gridWidth = grid.getWidth(), gridHeight = grid.getHeight(), cellSize = grid.getCellSize();
+            if(style.showSquare)
+                canvas.drawRect(horizontalOffset, verticalOffset, gridWidth + horizontalOffset, gridHeight + verticalOffset, squarePaint);
+            if(!style.showGrid || cellSize <= 0)
+                return;
+            for(float w = horizontalOffset; w < gridWidth + horizontalOffset; w += cellSize){
+                canvas.drawLine(w, verticalOffset, w, gridHeight + verticalOffset, gridPaint);
+            }
+            for(float h = verticalOffset; h < gridHeight + verticalOffset; h += cellSize){
+                canvas.drawLine(horizontalOffset, h, gridWidth + horizontalOffset, h, gridPaint);
+            }
+        }
+
+        private void drawSegments(Canvas canvas, SegmentGeometry geometry, long units){
+            long mask = geometry.format.maskFor(units);
+            final Path[] paths = geometry.paths;
+            for (int i = 0; i < paths.length; i++) {
+                canvas.drawPath(paths[i], ClockFormat.isActive(mask, i) ? activeTextPaint : inactiveTextPaint);
+            }
+        }
+    }
+}
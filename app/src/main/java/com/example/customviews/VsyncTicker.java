@@ -0,0 +1,71 @@
+package com.example.customviews;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.view.Choreographer;
+
+/**
+ * Ticks alineados con el vsync, para los relojes que cambian mas de una vez por segundo.
+ * En lugar de un mensaje del handler, se programa un frame callback del {@link Choreographer}
+ * para el primer frame posterior al deadline, de forma que el valor cambia en el mismo frame en el
+ * que se dibuja. Se crea uno por reloj y se reutiliza, asi que programar un tick no crea objetos.
+ *
+ * El tiempo del frame se entrega en milisegundos de {@link SystemClock#uptimeMillis()}: ambos
+ * relojes usan la misma base monotona que {@link System#nanoTime()}.
+ */
+@UiThread
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class VsyncTicker implements Choreographer.FrameCallback {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final ClockTicker.Callback callback;
+    private boolean scheduled;
+
+    /**
+     * @param callback se llama en cada tick con el tiempo del frame; el valor que devuelve se ignora,
+     *                 el reloj debe volver a programar el siguiente tick
+     */
+    VsyncTicker(@NonNull ClockTicker.Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @return true si se puede usar en este dispositivo
+     */
+    static boolean isSupported(){
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    /**
+     * Programa un tick para el primer frame posterior al deadline, reemplazando al anterior
+     * @param deadline instante, segun {@link SystemClock#uptimeMillis()}
+     */
+    void schedule(long deadline){
+        cancel();
+        long delay = Math.max(0, deadline - SystemClock.uptimeMillis());
+        choreographer.postFrameCallbackDelayed(this, delay);
+        scheduled = true;
+    }
+
+    void cancel(){
+        if(!scheduled)
+            return;
+        choreographer.removeFrameCallback(this);
+        scheduled = false;
+    }
+
+    boolean isScheduled(){
+        return scheduled;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        callback.onTick(frameTimeNanos / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,539 @@
+package com.example.customviews;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.example.customviews.core.ClockFormat;
+import com.example.customviews.core.Countdown;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifica que medir, hacer layout, dibujar y actualizar cada reloj no asigne memoria.
+ * Se recorre toda la cuenta regresiva en miles de ticks, dibujando despues de cada uno, y se
+ * cuentan los bytes asignados por el hilo con
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}. El presupuesto es cero:
+ * solo se descuenta lo que asigna el propio contador y, en los ticks, la invalidacion del
+ * framework (que bajo Robolectric pasa por shadows) de cada cambio de valor, medida por separado.
+ *
+ * Cada reloj se agrega a la ventana de una actividad antes de medirlo, para que corran los caminos
+ * que solo se usan enganchados: visibilidad, ticker, bocina y capas.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ClockAllocationBudgetTest {
+
+    private static final int SIZE = 400;
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 5000;
+    /**
+     * Invalidaciones durante la cuenta regresiva: una por cada segundo, mas la de la llegada a cero
+     */
+    private static final int VALUE_CHANGES = 25;
+    /**
+     * Invalidaciones durante la cuenta regresiva con decimas: una por cada decima, mas la de la
+     * llegada a cero
+     */
+    private static final int TENTHS_VALUE_CHANGES = 241;
+    private static final int CLOCK_WALL_SIZE = 32;
+    private static final long TRANSITION_MILLIS = 100;
+    /**
+     * Invalidaciones con un fundido de {@link #TRANSITION_MILLIS}: la de cada cambio de valor, mas
+     * una por cada tick mientras dura su fundido
+     */
+    private static final int TRANSITION_VALUE_CHANGES =
+            (int) (VALUE_CHANGES * (1 + TRANSITION_MILLIS * ITERATIONS / (25 * Countdown.SECOND)));
+
+    private Context context;
+    private FrameLayout container;
+    private CountingCanvas canvas;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        container = new FrameLayout(activity);
+        activity.setContentView(container);
+        context = activity;
+        canvas = new CountingCanvas(SIZE, SIZE);
+    }
+
+    @Test
+    public void clockView_doesNotAllocate() {
+        final ClockView view = new ClockView(context);
+        assertWithinBudget("ClockView", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        });
+    }
+
+    @Test
+    public void paddingClockView_doesNotAllocate() {
+        final PaddingClockView view = new PaddingClockView(context);
+        view.setPadding(10, 20, 10, 20);
+        assertWithinBudget("PaddingClockView", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        });
+    }
+
+    @Test
+    public void adaptableClockView_doesNotAllocate() {
+        final AdaptableClockView view = new AdaptableClockView(context);
+        assertWithinBudget("AdaptableClockView", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        });
+    }
+
+    @Test
+    public void measuredClockView_doesNotAllocate() {
+        final MeasuredClockView view = new MeasuredClockView(context);
+        assertWithinBudget("MeasuredClockView", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        });
+    }
+
+    @Test
+    public void optimizedClockView_doesNotAllocate_inEveryRenderMode() {
+        int[] renderModes = {
+                OptimizedClockView.RENDER_SEGMENTS,
+                OptimizedClockView.RENDER_MERGED,
+                OptimizedClockView.RENDER_ATLAS,
+                OptimizedClockView.RENDER_SPRITES,
+                OptimizedClockView.RENDER_VERTICES
+        };
+        for (int renderMode : renderModes) {
+            for (boolean staticLayer : new boolean[]{false, true}) {
+                final OptimizedClockView view = new OptimizedClockView(context);
+                view.setRenderMode(renderMode);
+                view.setStaticLayerEnabled(staticLayer);
+                assertWithinBudget("OptimizedClockView (render mode " + renderMode
+                        + ", static layer " + staticLayer + ")", view, new Clock() {
+                    @Override
+                    public void draw(Canvas canvas) {
+                        view.onDraw(canvas);
+                    }
+
+                    @Override
+                    public long tick(long now) {
+                        return view.updateClock(now);
+                    }
+                });
+            }
+        }
+    }
+
+    @Test
+    public void verticesRenderMode_drawsEverySegmentWithOneCall() {
+        OptimizedClockView segments = new OptimizedClockView(context);
+        OptimizedClockView vertices = new OptimizedClockView(context);
+        vertices.setRenderMode(OptimizedClockView.RENDER_VERTICES);
+        int segmentOps = drawOpsOf(segments);
+        int vertexOps = drawOpsOf(vertices);
+        assertEquals(segmentOps - ClockFormat.SECONDS.getSegments() + 1, vertexOps);
+    }
+
+    private int drawOpsOf(OptimizedClockView view) {
+        int widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        int heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        view.measure(widthMeasureSpec, heightMeasureSpec);
+        view.layout(0, 0, SIZE, SIZE);
+        canvas.drawOps = 0;
+        view.onDraw(canvas);
+        return canvas.drawOps;
+    }
+
+    @Test
+    public void optimizedClockView_doesNotAllocate_withTenths() {
+        final OptimizedClockView view = new OptimizedClockView(context);
+        view.setFormat(ClockFormat.MINUTES_SECONDS_TENTHS);
+        assertWithinBudget("OptimizedClockView (mm:ss.t)", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        }, TENTHS_VALUE_CHANGES);
+    }
+
+    @Test
+    public void optimizedClockView_doesNotAllocate_withWarningPalette() {
+        final OptimizedClockView view = new OptimizedClockView(context);
+        view.setWarning(5 * Countdown.SECOND, ClockPalette.warning(context));
+        assertWithinBudget("OptimizedClockView (warning palette)", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        }, VALUE_CHANGES + 1);
+    }
+
+    @Test
+    public void optimizedClockView_doesNotAllocate_withTransitions() {
+        final OptimizedClockView view = new OptimizedClockView(context);
+        view.setTransitionDuration(TRANSITION_MILLIS);
+        //el valor cambia, asi que se dibuja con un fundido en curso
+        view.updateClock(SystemClock.uptimeMillis() + Countdown.SECOND + 1);
+        assertWithinBudget("OptimizedClockView (transitions)", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                long next = view.updateClock(now);
+                view.updateFade(now);
+                return next;
+            }
+        }, TRANSITION_VALUE_CHANGES);
+    }
+
+    @Test
+    public void optimizedClockView_doesNotAllocate_withMetrics() {
+        final OptimizedClockView view = new OptimizedClockView(context);
+        view.setMetricsEnabled(true);
+        assertWithinBudget("OptimizedClockView (metrics)", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        });
+    }
+
+    @Test
+    public void clockWallView_doesNotAllocate() {
+        final ClockWallView view = new ClockWallView(context);
+        view.setClockCount(CLOCK_WALL_SIZE);
+        view.start();
+        assertWithinBudget("ClockWallView", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClocks(now);
+            }
+        }, VALUE_CHANGES * CLOCK_WALL_SIZE);
+    }
+
+    @Test
+    public void customizableClockView_doesNotAllocate() {
+        final CustomizableClockView view = new CustomizableClockView(context);
+        assertWithinBudget("CustomizableClockView", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                view.onDraw(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return view.updateClock(now);
+            }
+        });
+    }
+
+    @Test
+    public void surfaceClockView_doesNotAllocate() {
+        SurfaceClockView view = new SurfaceClockView(context);
+        //antes de engancharla, para que el hilo de render no reciba la superficie: la geometria y
+        //cada tick se calculan en este hilo
+        view.surfaceChanged(view.getHolder(), PixelFormat.OPAQUE, SIZE, SIZE);
+        final SurfaceClockView.Renderer renderer = view.getRenderer();
+        renderer.updateGeometry();
+        renderer.update(SystemClock.uptimeMillis());
+        assertWithinBudget("SurfaceClockView", view, new Clock() {
+            @Override
+            public void draw(Canvas canvas) {
+                renderer.drawClock(canvas);
+            }
+
+            @Override
+            public long tick(long now) {
+                return renderer.update(now);
+            }
+        });
+    }
+
+    /**
+     * Acceso a los metodos protegidos de cada reloj, que solo se pueden llamar con el tipo concreto
+     */
+    private interface Clock {
+        void draw(Canvas canvas);
+
+        long tick(long now);
+    }
+
+    private void assertWithinBudget(String name, View view, Clock clock) {
+        assertWithinBudget(name, view, clock, VALUE_CHANGES);
+    }
+
+    private void assertWithinBudget(String name, View view, Clock clock, int valueChanges) {
+        container.addView(view);
+        try {
+            assertTrue(name + " is not attached to a window", view.isAttachedToWindow());
+            assertAttachedWithinBudget(name, view, clock, valueChanges);
+        } finally {
+            container.removeView(view);
+        }
+    }
+
+    private void assertAttachedWithinBudget(String name, final View view, final Clock clock, int valueChanges) {
+        final int widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        final int heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        view.measure(widthMeasureSpec, heightMeasureSpec);
+        view.layout(0, 0, SIZE, SIZE);
+
+        //forceLayout() evita que measure() use el resultado anterior sin llamar a onMeasure
+        Runnable measureAndLayout = new Runnable() {
+            @Override
+            public void run() {
+                view.forceLayout();
+                view.measure(widthMeasureSpec, heightMeasureSpec);
+                view.layout(0, 0, SIZE, SIZE);
+            }
+        };
+        assertNoAllocation(name + ".measure/layout", measureAndLayout);
+
+        //el primer dibujo crea los caches de cada tamaño (geometria, atlas, capas)
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            clock.draw(canvas);
+        }
+        long invalidateBytes = invalidateBytes(view);
+
+        //el tick avanza de a pocos milisegundos y se dibuja despues de cada uno, asi que se dibuja
+        //cada valor de la cuenta regresiva, incluyendo la llegada a cero
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long step = (24 * Countdown.SECOND + Countdown.SECOND) / ITERATIONS;
+        long now = SystemClock.uptimeMillis();
+        long tickBytes = 0;
+        long drawBytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            now += step;
+            long before = bean.getThreadAllocatedBytes(threadId);
+            clock.tick(now);
+            long ticked = bean.getThreadAllocatedBytes(threadId);
+            clock.draw(canvas);
+            long drawn = bean.getThreadAllocatedBytes(threadId);
+            tickBytes += ticked - before;
+            drawBytes += drawn - ticked;
+        }
+        long overhead = measurementOverheadBytes(bean, threadId);
+        tickBytes -= overhead;
+        drawBytes -= overhead;
+
+        assertTrue(name + ".onDraw allocated " + drawBytes + " bytes drawing the whole countdown",
+                drawBytes <= 0);
+        long frameworkBytes = valueChanges * invalidateBytes;
+        assertTrue(name + ".updateClock allocated " + tickBytes + " bytes in " + ITERATIONS
+                        + " ticks (framework invalidate() accounts for " + frameworkBytes + ")",
+                tickBytes <= frameworkBytes);
+        assertTrue(name + " drew nothing", canvas.drawOps > 0);
+    }
+
+    private void assertNoAllocation(String name, Runnable action) {
+        //primero se ejecuta unas veces para que se creen los caches (geometria, atlas, capas)
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            action.run();
+        }
+        long bytes = allocatedBytes(action, ITERATIONS) - overheadBytes();
+        assertTrue(name + " allocated " + bytes + " bytes in " + ITERATIONS + " calls", bytes <= 0);
+    }
+
+    /**
+     * Bytes que asigna el framework (bajo Robolectric, sus shadows) en una invalidacion. Cada
+     * cambio de valor hace una sola llamada, a invalidate() o a invalidate(Rect), asi que se usa
+     * la mas cara de las dos
+     */
+    private static long invalidateBytes(final View view) {
+        Runnable invalidate = new Runnable() {
+            @Override
+            public void run() {
+                view.invalidate();
+            }
+        };
+        Runnable invalidateDirty = new Runnable() {
+            private final Rect dirty = new Rect(0, 0, SIZE, SIZE);
+
+            @Override
+            public void run() {
+                view.invalidate(dirty);
+            }
+        };
+        allocatedBytes(invalidate, WARMUP_ITERATIONS);
+        allocatedBytes(invalidateDirty, WARMUP_ITERATIONS);
+        long bytes = Math.max(allocatedBytes(invalidate, ITERATIONS), allocatedBytes(invalidateDirty, ITERATIONS))
+                - overheadBytes();
+        //redondeado hacia arriba, para no quedar por debajo de una sola llamada
+        return Math.max(0, (bytes + ITERATIONS - 1) / ITERATIONS);
+    }
+
+    /**
+     * Bytes que se cuentan de mas al medir {@link #ITERATIONS} veces entre dos lecturas seguidas
+     * del contador, como en el recorrido de la cuenta regresiva
+     */
+    private static long measurementOverheadBytes(com.sun.management.ThreadMXBean bean, long threadId) {
+        long bytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long before = bean.getThreadAllocatedBytes(threadId);
+            bytes += bean.getThreadAllocatedBytes(threadId) - before;
+        }
+        return bytes;
+    }
+
+    private static long overheadBytes() {
+        return allocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, ITERATIONS);
+    }
+
+    private static long allocatedBytes(Runnable action, int iterations) {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        return bean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /**
+     * Canvas que solo cuenta las operaciones de dibujo, para no medir lo que asigna el canvas de
+     * Robolectric al registrar cada operacion
+     */
+    private static class CountingCanvas extends Canvas {
+        private final int width;
+        private final int height;
+        int drawOps;
+
+        CountingCanvas(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+            drawOps++;
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+            drawOps++;
+        }
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+            drawOps++;
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+            drawOps++;
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+            drawOps++;
+        }
+
+        @Override
+        public void drawVertices(VertexMode mode, int vertexCount, float[] verts, int vertOffset,
+                                 float[] texs, int texOffset, int[] colors, int colorOffset,
+                                 short[] indices, int indexOffset, int indexCount, Paint paint) {
+            drawOps++;
+        }
+
+        @Override
+        public int save() {
+            return 1;
+        }
+
+        @Override
+        public void translate(float dx, float dy) {
+        }
+
+        @Override
+        public void restoreToCount(int saveCount) {
+        }
+    }
+}
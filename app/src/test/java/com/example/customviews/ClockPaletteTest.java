@@ -0,0 +1,53 @@
+package com.example.customviews;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ClockPaletteTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() {
+        ClockThemes.setTheme((ClockPalette) null);
+    }
+
+    @Test
+    public void clocksWithTheSameColors_shareThePaints() {
+        OptimizedClockView first = new OptimizedClockView(context);
+        OptimizedClockView second = new OptimizedClockView(context);
+
+        assertSame(first.getPalette(), second.getPalette());
+        assertSame(ClockPalette.of(first.getStyle()).activeText, second.getPalette().activeText);
+        assertNotSame(first.getPalette(), ClockPalette.warning(context));
+    }
+
+    @Test
+    public void setTheme_reusesTheRegisteredPalette() {
+        ClockPalette warning = ClockPalette.warning(context);
+        ClockThemes.register("warning", warning);
+        ClockThemes.setTheme("warning");
+
+        assertSame(warning, ClockThemes.getTheme());
+        assertSame(warning, ClockPalette.warning(context));
+        ClockThemes.setTheme((String) null);
+        assertSame(null, ClockThemes.getTheme());
+    }
+}
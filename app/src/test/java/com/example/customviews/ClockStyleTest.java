@@ -0,0 +1,49 @@
+package com.example.customviews;
+
+import android.content.Context;
+
+import com.example.customviews.core.ClockFormat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ClockStyleTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void build_internsEqualStyles() {
+        ClockStyle first = new ClockStyle.Builder(context).format(ClockFormat.MINUTES_SECONDS).build();
+        ClockStyle second = new ClockStyle.Builder(context).format(ClockFormat.MINUTES_SECONDS).build();
+        ClockStyle other = first.buildUpon().showGrid(false).build();
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertSame(first, other.buildUpon().showGrid(true).build());
+    }
+
+    @Test
+    public void clocksWithoutAttributes_shareTheDefaultStyle() {
+        CustomizableClockView first = new CustomizableClockView(context);
+        CustomizableClockView second = new CustomizableClockView(context);
+
+        assertSame(first.getStyle(), second.getStyle());
+        assertSame(ClockStyle.defaults(context), first.getStyle());
+        assertEquals(first.getStyle().format, first.getFormat());
+    }
+}
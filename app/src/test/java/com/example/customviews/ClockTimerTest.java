@@ -0,0 +1,80 @@
+package com.example.customviews;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import com.example.customviews.core.Countdown;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ClockTimerTest {
+
+    private static final long DURATION = 3 * Countdown.SECOND;
+
+    private ClockTimer timer;
+    private long shownMillis = -1;
+    private int shows;
+
+    @Before
+    public void setUp() {
+        View view = new View(RuntimeEnvironment.application);
+        timer = new ClockTimer(view, DURATION, new ClockTimer.Display() {
+            @Override
+            public void showRemaining(long now, long remainingMillis, boolean fromTick) {
+                shownMillis = remainingMillis;
+                shows++;
+            }
+
+            @Override
+            public long nextTickTime(long now) {
+                return timer.getCountdown().nextChangeTime(now);
+            }
+        });
+    }
+
+    @Test
+    public void update_ticksEverySecondAndFinishesOnce() {
+        long now = SystemClock.uptimeMillis();
+        timer.start();
+        assertTrue(timer.getCountdown().isRunning());
+        assertEquals(DURATION, shownMillis);
+
+        assertEquals(now + 2 * Countdown.SECOND, timer.update(now + Countdown.SECOND, true));
+        assertEquals(2 * Countdown.SECOND, shownMillis);
+
+        assertEquals(ClockTicker.NO_DEADLINE, timer.update(now + DURATION + 5, true));
+        assertEquals(0, shownMillis);
+        assertFalse(timer.getCountdown().isRunning());
+        assertFalse(timer.getCountdown().hasExpired(now + DURATION + 5));
+    }
+
+    @Test
+    public void stop_keepsTheRemainingTime() {
+        timer.start();
+        timer.stop();
+        int showsAfterStop = shows;
+        long later = SystemClock.uptimeMillis() + Countdown.SECOND;
+        assertEquals(ClockTicker.NO_DEADLINE, timer.update(later, true));
+        assertEquals(DURATION, shownMillis);
+        assertEquals(showsAfterStop + 1, shows);
+    }
+
+    @Test
+    public void detached_schedulesNothing() {
+        timer.start();
+        long next = timer.getCountdown().nextChangeTime(SystemClock.uptimeMillis());
+        assertEquals(ClockTicker.NO_DEADLINE, timer.filter(next));
+        assertFalse(timer.isVisible());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.customviews;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ClockVisibilityTest {
+
+    private static final long NEXT_TICK = 1000;
+    private static final long EXPIRY = 24000;
+
+    private FrameLayout container;
+    private View view;
+    private ClockVisibility visibility;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        container = new FrameLayout(activity);
+        activity.setContentView(container);
+        view = new View(activity);
+        visibility = new ClockVisibility(view);
+    }
+
+    @Test
+    public void detached_schedulesNothing() {
+        assertFalse(visibility.setAttached(false));
+        assertEquals(ClockVisibility.DETACHED, visibility.getState());
+        assertEquals(ClockTicker.NO_DEADLINE, visibility.filter(NEXT_TICK, EXPIRY));
+    }
+
+    @Test
+    public void visible_schedulesEveryTick() {
+        container.addView(view);
+        assertTrue(visibility.setAttached(true));
+        assertTrue(visibility.isVisible());
+        assertEquals(NEXT_TICK, visibility.filter(NEXT_TICK, EXPIRY));
+        assertEquals(ClockTicker.NO_DEADLINE, visibility.filter(ClockTicker.NO_DEADLINE, EXPIRY));
+    }
+
+    @Test
+    public void hidden_schedulesOnlyTheExpiry() {
+        container.addView(view);
+        visibility.setAttached(true);
+
+        container.setVisibility(View.INVISIBLE);
+        assertTrue(visibility.refresh());
+        assertEquals(ClockVisibility.HIDDEN, visibility.getState());
+        assertEquals(EXPIRY, visibility.filter(NEXT_TICK, EXPIRY));
+
+        container.setVisibility(View.VISIBLE);
+        assertTrue(visibility.refresh());
+        assertTrue(visibility.isVisible());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.customviews;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.widget.FrameLayout;
+
+import com.example.customviews.core.Countdown;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * El hilo de render se prueba llamando directamente a su {@link SurfaceClockView.Renderer}: bajo
+ * Robolectric el reloj del sistema no avanza, asi que cada tick se simula con su instante.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SurfaceClockViewTest {
+
+    private FrameLayout container;
+    private SurfaceClockView view;
+    private SurfaceClockView.Renderer renderer;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        container = new FrameLayout(activity);
+        activity.setContentView(container);
+        view = new SurfaceClockView(activity);
+        renderer = view.getRenderer();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+        container.removeView(view);
+    }
+
+    @Test
+    public void start_ticksEverySecondUntilExpiry() {
+        long now = SystemClock.uptimeMillis();
+        long next = renderer.update(now);
+        assertEquals(24, renderer.units);
+
+        int ticks = 0;
+        while (next != ClockTicker.NO_DEADLINE) {
+            assertTrue(next > now);
+            now = next;
+            next = renderer.update(now);
+            ticks++;
+        }
+        assertEquals(24, ticks);
+        assertEquals(0, renderer.units);
+
+        //la cuenta termina una sola vez
+        assertEquals(ClockTicker.NO_DEADLINE, renderer.update(now + Countdown.SECOND));
+        assertEquals(0, renderer.units);
+    }
+
+    @Test
+    public void stop_keepsTheRemainingTime() {
+        long now = SystemClock.uptimeMillis();
+        view.stop();
+        assertEquals(ClockTicker.NO_DEADLINE, renderer.update(now + 5 * Countdown.SECOND));
+        assertEquals(24, renderer.units);
+
+        view.start();
+        assertEquals(now + 6 * Countdown.SECOND, renderer.update(now + 5 * Countdown.SECOND));
+        assertEquals(19, renderer.units);
+    }
+
+    @Test
+    public void attached_rendersOnItsOwnThread() {
+        assertNull(view.getRenderLooper());
+
+        container.addView(view);
+        Looper looper = view.getRenderLooper();
+        assertNotNull(looper);
+        assertNotSame(Looper.getMainLooper(), looper);
+
+        container.removeView(view);
+        assertNull(view.getRenderLooper());
+    }
+
+    @Test
+    public void expiry_playsTheBuzzerWhileTheMainThreadIsBlocked() {
+        Buzzer buzzer = Buzzer.acquire(container.getContext());
+        try {
+            buzzer.onSoundLoaded();
+            container.addView(view);
+            long deadline = SystemClock.uptimeMillis() + 24 * Countdown.SECOND;
+            view.reset();
+
+            //nada de lo que se programe en el hilo principal se ejecuta
+            ShadowLooper.pauseMainLooper();
+            SystemClock.sleep(24 * Countdown.SECOND + 5);
+            assertEquals(ClockTicker.NO_DEADLINE, renderer.update(deadline + 5));
+            assertEquals(5, Buzzer.getLastLatencyMillis());
+
+            //cuando se libera el hilo principal ya paso mas de MAX_LATENESS_MILLIS, pero la bocina
+            //ya sono
+            SystemClock.sleep(2 * Buzzer.MAX_LATENESS_MILLIS);
+            ShadowLooper.unPauseMainLooper();
+            assertEquals(5, Buzzer.getLastLatencyMillis());
+        } finally {
+            buzzer.release();
+        }
+    }
+}
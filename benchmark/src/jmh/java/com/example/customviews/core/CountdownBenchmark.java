@@ -0,0 +1,51 @@
+package com.example.customviews.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Logica de un tick del reloj (updateClock): valor mostrado, deteccion del fin y siguiente deadline.
+ */
+@State(Scope.Thread)
+public class CountdownBenchmark {
+
+    private static final long DURATION = 24 * Countdown.SECOND;
+
+    private final Countdown countdown = new Countdown(DURATION);
+    private long now;
+    private int displayed;
+
+    @Setup
+    public void setup() {
+        countdown.start(now);
+    }
+
+    @Benchmark
+    public long tick() {
+        //cada tick llega un poco tarde, como ocurre con el handler
+        now += Countdown.SECOND + 3;
+        displayed = countdown.displayedSeconds(now);
+        if (countdown.hasExpired(now)) {
+            countdown.finish();
+            countdown.reset(now);
+            countdown.start(now);
+            return displayed;
+        }
+        return countdown.nextChangeTime(now);
+    }
+
+    @Benchmark
+    public long pauseResume() {
+        now += 250;
+        countdown.stop(now);
+        //al llegar a cero start() no hace nada, asi que se vuelve a empezar para que cada
+        //llamada mida una pausa real
+        if (countdown.remainingMillis(now) == 0) {
+            countdown.reset(now);
+        }
+        countdown.start(now);
+        return countdown.remainingMillis(now);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.customviews.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Calculo de la grilla (setupGrid) y de las coordenadas de los segmentos (initNumberPaths / createPath),
+ * sin la creacion de los {@code Path} de Android.
+ */
+@State(Scope.Thread)
+public class SegmentGeometryBenchmark {
+
+    @Param({"200", "1080"})
+    public int size;
+
+    @Param({"0", "2"})
+    public int cellPadding;
+
+    private final ClockGrid grid = new ClockGrid();
+    private final float[] coordinates = new float[ClockGrid.SEGMENT_COORDINATES];
+    private final int[] starts = new int[SevenSegment.SEGMENTS + 1];
+    private int delta;
+
+    @Benchmark
+    public ClockGrid setupGrid() {
+        //se varia el tamaño para que el JIT no pueda reutilizar el resultado anterior
+        delta = (delta + 1) & 7;
+        grid.setup(size + delta, size, 8, 8, 8, 8, cellPadding);
+        return grid;
+    }
+
+    @Benchmark
+    public float[] numberCoordinates() {
+        grid.setup(size, size, 0, 0, 0, 0, cellPadding);
+        grid.fillSegments(coordinates, starts);
+        return coordinates;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.customviews.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Calculo del estado de los segmentos para el valor que se muestra
+ * (lo que hace updatePathsStatesForNumber en cada onDraw).
+ * {@link #legacySwitch()} reproduce la implementacion original con switch y varargs, como referencia.
+ */
+@State(Scope.Thread)
+public class SegmentStateBenchmark {
+
+    private static final int A = 0, B = 1, C = 2, D = 3, E = 4, F = 5, G = 6;
+
+    private final boolean[] segments = new boolean[SevenSegment.SEGMENTS];
+    private int value;
+    private long gameClockUnits;
+
+    private int nextValue(){
+        value = value == SevenSegment.MAX_VALUE ? SevenSegment.MIN_VALUE : value + 1;
+        return value;
+    }
+
+    @Benchmark
+    public int maskTable() {
+        return SevenSegment.maskForValue(nextValue());
+    }
+
+    /**
+     * Mascara de un reloj de partido (mm:ss.t), calculada digito por digito en cada decima
+     */
+    @Benchmark
+    public long gameClockMask() {
+        ClockFormat format = ClockFormat.MINUTES_SECONDS_TENTHS;
+        gameClockUnits = gameClockUnits == 0 ? format.getMaxUnits() : gameClockUnits - 1;
+        return format.maskFor(gameClockUnits);
+    }
+
+    @Benchmark
+    public boolean[] maskTableToSegments() {
+        int mask = SevenSegment.maskForValue(nextValue());
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = SevenSegment.isActive(mask, i);
+        }
+        return segments;
+    }
+
+    @Benchmark
+    public boolean[] legacySwitch() {
+        int number = nextValue();
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = false;
+        }
+        int digitIndex = 0;
+        do {
+            int digit = number % 10;
+            number /= 10;
+            switch (digit) {
+                case 0: updateSingleDigit(digitIndex, A, B, C, E, F, G); break;
+                case 1: updateSingleDigit(digitIndex, C, F); break;
+                case 2: updateSingleDigit(digitIndex, A, C, D, E, G); break;
+                case 3: updateSingleDigit(digitIndex, A, C, D, F, G); break;
+                case 4: updateSingleDigit(digitIndex, B, D, C, F); break;
+                case 5: updateSingleDigit(digitIndex, A, B, D, F, G); break;
+                case 6: updateSingleDigit(digitIndex, A, B, D, F, G, E); break;
+                case 7: updateSingleDigit(digitIndex, A, C, F); break;
+                case 8: updateSingleDigit(digitIndex, A, B, C, D, E, F, G); break;
+                case 9: updateSingleDigit(digitIndex, A, B, C, D, F); break;
+                default: updateSingleDigit(digitIndex);
+            }
+            digitIndex++;
+        } while (number > 0);
+        return segments;
+    }
+
+    private void updateSingleDigit(int digitIndex, int... activeIndexes) {
+        int offset = segments.length - (digitIndex + 1) * 7;
+        if (offset < 0)
+            return;
+        for (int i = 0; i < 7; i++) {
+            for (int active : activeIndexes) {
+                if (i == active) {
+                    segments[offset + i] = true;
+                    break;
+                }
+                segments[offset + i] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.customviews.core;
+
+/**
+ * Formato binario de los comandos con los que una consola externa controla los relojes.
+ * Cada comando es un frame de tamaño fijo, en big endian:
+ * <pre>
+ *   opcode   1 byte   ({@link #START}, {@link #STOP}, {@link #RESET} o {@link #SET_VALUE})
+ *   clockId  2 bytes  sin signo
+ *   millis   4 bytes  solo en {@link #SET_VALUE}: nueva duracion del reloj
+ * </pre>
+ * No hay separadores ni encabezados, asi que un opcode desconocido no se puede saltear: quien lee
+ * el stream lo trata como un error de protocolo y se vuelve a conectar.
+ */
+public final class ClockCommand {
+
+    public static final int START = 1;
+    public static final int STOP = 2;
+    public static final int RESET = 3;
+    public static final int SET_VALUE = 4;
+
+    /**
+     * Mayor id de reloj que se puede enviar
+     */
+    public static final int MAX_CLOCK_ID = 0xFFFF;
+    /**
+     * Bytes del frame mas largo
+     */
+    public static final int MAX_FRAME_LENGTH = 7;
+
+    /**
+     * Relojes que se pueden controlar con comandos; los ids van de 0 a {@link #getClockCount()} - 1
+     */
+    public interface Target {
+        int getClockCount();
+
+        void start(int clockId);
+
+        void stop(int clockId);
+
+        void reset(int clockId);
+
+        void setDurationMillis(int clockId, long durationMillis);
+    }
+
+    private ClockCommand() {
+    }
+
+    /**
+     * @return cantidad de bytes del frame de un opcode, o -1 si el opcode no existe
+     */
+    public static int frameLength(int opcode){
+        switch (opcode){
+            case START:
+            case STOP:
+            case RESET:
+                return 3;
+            case SET_VALUE:
+                return 7;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Empaqueta un comando en un long, para pasarlo entre hilos sin crear objetos (ver
+     * {@link CommandRingBuffer}): 8 bits de opcode, 16 de id de reloj y 32 de valor
+     * @param value milisegundos para {@link #SET_VALUE}; se ignora en los demas
+     */
+    public static long pack(int opcode, int clockId, long value){
+        if(frameLength(opcode) < 0)
+            throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        if(clockId < 0 || clockId > MAX_CLOCK_ID)
+            throw new IllegalArgumentException("Clock id out of range: " + clockId);
+        if(opcode == SET_VALUE && (value < 0 || value > Integer.MAX_VALUE))
+            throw new IllegalArgumentException("Value out of range: " + value);
+        return ((long) opcode << 56) | ((long) clockId << 32) | (opcode == SET_VALUE ? value : 0);
+    }
+
+    public static int opcodeOf(long packed){
+        return (int) (packed >>> 56);
+    }
+
+    public static int clockIdOf(long packed){
+        return (int) (packed >>> 32) & MAX_CLOCK_ID;
+    }
+
+    public static long valueOf(long packed){
+        return packed & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Escribe un comando
+     * @param out arreglo con al menos {@link #frameLength(int)} bytes libres desde {@code offset}
+     * @param value milisegundos para {@link #SET_VALUE}; se ignora en los demas
+     * @return cantidad de bytes escritos
+     */
+    public static int encode(byte[] out, int offset, int opcode, int clockId, long value){
+        int length = frameLength(opcode);
+        if(length < 0)
+            throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        if(clockId < 0 || clockId > MAX_CLOCK_ID)
+            throw new IllegalArgumentException("Clock id out of range: " + clockId);
+        out[offset] = (byte) opcode;
+        out[offset + 1] = (byte) (clockId >>> 8);
+        out[offset + 2] = (byte) clockId;
+        if(opcode == SET_VALUE) {
+            if(value < 0 || value > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Value out of range: " + value);
+            int millis = (int) value;
+            out[offset + 3] = (byte) (millis >>> 24);
+            out[offset + 4] = (byte) (millis >>> 16);
+            out[offset + 5] = (byte) (millis >>> 8);
+            out[offset + 6] = (byte) millis;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.customviews.core;
+
+import java.io.IOException;
+
+/**
+ * Decodifica un stream de {@link ClockCommand}s a medida que llegan los bytes. Un frame puede
+ * quedar partido entre dos lecturas: los bytes que faltan se guardan hasta la siguiente.
+ * Decodificar no crea objetos. No es thread-safe: se usa desde el hilo que lee el stream.
+ */
+public final class ClockCommandDecoder {
+
+    public interface Sink {
+        /**
+         * @param value milisegundos para {@link ClockCommand#SET_VALUE}, 0 en los demas
+         */
+        void onCommand(int opcode, int clockId, long value);
+    }
+
+    private final Sink sink;
+    private final byte[] partial = new byte[ClockCommand.MAX_FRAME_LENGTH];
+    private int partialLength;
+
+    public ClockCommandDecoder(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Decodifica los bytes leidos, entregando cada comando completo al sink
+     * @throws ProtocolException si aparece un opcode desconocido. Los bytes siguientes no se pueden
+     * interpretar, asi que el decoder queda vacio y se debe descartar el resto del stream
+     */
+    public void feed(byte[] buffer, int offset, int length) throws ProtocolException {
+        int end = offset + length;
+        int position = offset;
+        //primero se completa el frame que quedo partido en la lectura anterior
+        if(partialLength > 0) {
+            int frameLength = ClockCommand.frameLength(partial[0]);
+            int missing = Math.min(frameLength - partialLength, end - position);
+            System.arraycopy(buffer, position, partial, partialLength, missing);
+            partialLength += missing;
+            position += missing;
+            if(partialLength < frameLength)
+                return;
+            emit(partial, 0);
+            partialLength = 0;
+        }
+
+        while (position < end) {
+            int opcode = buffer[position];
+            int frameLength = ClockCommand.frameLength(opcode);
+            if(frameLength < 0) {
+                partialLength = 0;
+                throw new ProtocolException("Unknown opcode " + opcode + " at byte " + (position - offset));
+            }
+            if(end - position < frameLength) {
+                partialLength = end - position;
+                System.arraycopy(buffer, position, partial, 0, partialLength);
+                return;
+            }
+            emit(buffer, position);
+            position += frameLength;
+        }
+    }
+
+    /**
+     * Descarta un frame partido, por ejemplo al reconectarse
+     */
+    public void reset(){
+        partialLength = 0;
+    }
+
+    private void emit(byte[] frame, int offset){
+        int opcode = frame[offset];
+        int clockId = ((frame[offset + 1] & 0xFF) << 8) | (frame[offset + 2] & 0xFF);
+        long value = 0;
+        if(opcode == ClockCommand.SET_VALUE) {
+            value = (((frame[offset + 3] & 0xFF) << 24)
+                    | ((frame[offset + 4] & 0xFF) << 16)
+                    | ((frame[offset + 5] & 0xFF) << 8)
+                    | (frame[offset + 6] & 0xFF)) & 0xFFFFFFFFL;
+        }
+        sink.onCommand(opcode, clockId, value);
+    }
+
+    /**
+     * El stream no respeta el formato de {@link ClockCommand}
+     */
+    public static final class ProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+}
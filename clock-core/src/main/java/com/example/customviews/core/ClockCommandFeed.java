@@ -0,0 +1,175 @@
+package com.example.customviews.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Lee {@link ClockCommand}s de un socket en un hilo propio y los deja en un
+ * {@link CommandCoalescer}, de donde el hilo principal los toma una vez por frame. El hilo de
+ * lectura nunca toca las vistas: solo avisa, con {@link Listener#onCommandsPending()}, cuando el
+ * coalescer pasa de vacio a tener comandos.
+ *
+ * Si la conexion se cae o el stream no respeta el protocolo, se vuelve a conectar despues de
+ * {@link #RECONNECT_DELAY_MILLIS}, descartando el frame que quedo partido.
+ */
+public final class ClockCommandFeed {
+
+    static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Origen de los bytes. Se abre una vez por conexion
+     */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    public interface Listener {
+        /**
+         * Se llama desde el hilo de lectura cuando hay comandos para aplicar y no se habian
+         * pedido; se debe programar un {@link CommandCoalescer#drain(ClockCommand.Target)} en el
+         * hilo principal
+         */
+        void onCommandsPending();
+    }
+
+    private final Source source;
+    private final CommandCoalescer coalescer;
+    private final Listener listener;
+    private final ClockCommandDecoder.Sink sink = new ClockCommandDecoder.Sink() {
+        @Override
+        public void onCommand(int opcode, int clockId, long value) {
+            //el coalescer es thread-safe: un hilo que se esta deteniendo puede dejar un comando mas
+            if(coalescer.post(opcode, clockId, value))
+                listener.onCommandsPending();
+        }
+    };
+
+    /**
+     * Lectura en curso, o null si esta detenido. Cada {@link #start()} crea una nueva
+     */
+    private volatile Reader reader;
+
+    public ClockCommandFeed(Source source, CommandCoalescer coalescer, Listener listener) {
+        this.source = source;
+        this.coalescer = coalescer;
+        this.listener = listener;
+    }
+
+    /**
+     * @return un origen que se conecta por TCP, por ejemplo a una consola en la red local
+     */
+    public static Source tcp(final String host, final int port){
+        return new Source() {
+            @Override
+            public InputStream open() throws IOException {
+                Socket socket = new Socket();
+                try {
+                    socket.setTcpNoDelay(true);
+                    socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                    return socket.getInputStream();
+                } catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * Empieza a leer en un hilo nuevo. No hace nada si ya esta leyendo
+     */
+    public synchronized void start(){
+        if(reader != null)
+            return;
+        reader = new Reader();
+        reader.start();
+    }
+
+    /**
+     * Deja de leer y cierra la conexion. Los comandos que ya estan en el coalescer se mantienen.
+     * No espera al hilo de lectura: si esta bloqueado (por ejemplo conectandose), termina solo
+     * cuando se desbloquea, sin tocar la lectura de un {@link #start()} posterior
+     */
+    public synchronized void stop(){
+        if(reader == null)
+            return;
+        reader.stop();
+        reader = null;
+    }
+
+    public boolean isRunning(){
+        return reader != null;
+    }
+
+    /**
+     * Una lectura, desde un {@link #start()} hasta su {@link #stop()}, con su propio hilo, decoder,
+     * buffer y conexion
+     */
+    private final class Reader implements Runnable {
+
+        private final Thread thread = new Thread(this, "clock-command-feed");
+        private final ClockCommandDecoder decoder = new ClockCommandDecoder(sink);
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private volatile boolean running = true;
+        private volatile Closeable connection;
+
+        void start(){
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop(){
+            running = false;
+            closeConnection();
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    InputStream input = source.open();
+                    connection = input;
+                    if(!running) {
+                        closeConnection();
+                        return;
+                    }
+                    decoder.reset();
+                    int read;
+                    while (running && (read = input.read(buffer)) >= 0) {
+                        decoder.feed(buffer, 0, read);
+                    }
+                } catch (IOException e) {
+                    //se vuelve a conectar
+                } finally {
+                    closeConnection();
+                }
+
+                if(!running)
+                    return;
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void closeConnection(){
+            Closeable current = connection;
+            connection = null;
+            if(current == null)
+                return;
+            try {
+                current.close();
+            } catch (IOException e) {
+                //ya estaba cerrada
+            }
+        }
+    }
+}
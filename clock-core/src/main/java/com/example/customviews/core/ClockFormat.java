@@ -0,0 +1,354 @@
+package com.example.customviews.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Formato con el que un reloj muestra el tiempo restante, por ejemplo {@code "ss"} (el reloj de 24
+ * segundos), {@code "mm:ss"} o {@code "mm:ss.t"} (un reloj de partido, 12:00.0).
+ * El patron se arma con digitos de minutos ({@code m}), segundos ({@code s}) y decimas
+ * ({@code t}), separados opcionalmente por dos puntos ({@code :}) o un punto decimal ({@code .}).
+ * Cada letra es un digito, asi que {@code "sss"} muestra hasta 999 segundos.
+ *
+ * El estado de todos los segmentos del formato se representa con una mascara de tipo long: cada
+ * digito ocupa 7 bits (de A a G), los dos puntos 2 bits y el punto decimal 1 bit, de izquierda a
+ * derecha. La tabla de cada formato se calcula una sola vez (ver {@link #of(String)}); calcular la
+ * mascara de un valor no crea objetos.
+ */
+public final class ClockFormat {
+
+    private static final int FIELD_MINUTES = 0, FIELD_SECONDS = 1, FIELD_TENTHS = 2;
+    private static final long TENTH = Countdown.SECOND / 10;
+
+    private static Map<String, ClockFormat> formats;
+
+    /**
+     * Dos digitos de segundos, sin separadores. Es el formato del reloj de 24 segundos
+     */
+    public static final ClockFormat SECONDS = of("ss");
+    public static final ClockFormat MINUTES_SECONDS = of("mm:ss");
+    /**
+     * Un digito de segundos y las decimas, con el mismo ancho que {@link #SECONDS}. Es el formato
+     * de un reloj de posesion en los ultimos segundos
+     */
+    public static final ClockFormat SECOND_TENTHS = of("s.t");
+    public static final ClockFormat SECONDS_TENTHS = of("ss.t");
+    public static final ClockFormat MINUTES_SECONDS_TENTHS = of("mm:ss.t");
+
+    private final String pattern;
+    private final int digits;
+    private final int segments;
+    private final int columns;
+    private final long resolutionMillis;
+    private final long maxUnits;
+    private final boolean hasMinutes;
+
+    /**
+     * Por cada digito: campo que muestra, divisor dentro del campo, si se apaga cuando es un cero a
+     * la izquierda y bit en el que empieza su mascara
+     */
+    private final int[] digitField;
+    private final int[] digitDivisor;
+    private final boolean[] digitBlankable;
+    private final int[] digitFirstSegment;
+    /**
+     * Por cada segmento: forma de {@link SegmentShapes} y columna de la grilla del digito al que
+     * pertenece (para los separadores, el digito que esta a su izquierda)
+     */
+    private final int[] segmentShape;
+    private final int[] segmentColumn;
+    /**
+     * Bits de los separadores, que siempre estan encendidos
+     */
+    private final long separatorMask;
+
+    private ClockFormat(String pattern) {
+        this.pattern = pattern;
+
+        int digits = 0, segments = 0;
+        boolean hasMinutes = false, hasTenths = false;
+        int minuteDigits = 0, secondDigits = 0;
+        char previous = 0;
+        for(int i = 0; i < pattern.length(); i++){
+            char c = pattern.charAt(i);
+            switch (c){
+                case 'm':
+                    if(previous != 0 && previous != 'm')
+                        throw new IllegalArgumentException("Minutes must come first: " + pattern);
+                    hasMinutes = true;
+                    minuteDigits++;
+                    break;
+                case 's':
+                    if(previous == 't' || (secondDigits > 0 && previous != 's'))
+                        throw new IllegalArgumentException("Misplaced seconds: " + pattern);
+                    secondDigits++;
+                    break;
+                case 't':
+                    if(hasTenths)
+                        throw new IllegalArgumentException("Only one tenths digit is allowed: " + pattern);
+                    hasTenths = true;
+                    break;
+                case ':':
+                case '.':
+                    if(previous == 0 || previous == ':' || previous == '.' || i == pattern.length() - 1)
+                        throw new IllegalArgumentException("A separator must be between two digits: " + pattern);
+                    segments += c == ':' ? 2 : 1;
+                    previous = c;
+                    continue;
+                default:
+                    throw new IllegalArgumentException("Unknown character '" + c + "' in " + pattern);
+            }
+            digits++;
+            segments += SevenSegment.SEGMENTS_PER_DIGIT;
+            previous = c;
+        }
+        if(digits == 0)
+            throw new IllegalArgumentException("The format has no digits: " + pattern);
+        if(hasMinutes && secondDigits == 0)
+            throw new IllegalArgumentException("Minutes need seconds: " + pattern);
+        if(segments > Long.SIZE)
+            throw new IllegalArgumentException("Too many segments for a long mask: " + pattern);
+
+        this.digits = digits;
+        this.segments = segments;
+        this.columns = digits * SegmentShapes.DIGIT_COLUMNS - (SegmentShapes.DIGIT_COLUMNS - SegmentShapes.DIGIT_WIDTH);
+        this.resolutionMillis = hasTenths ? TENTH : Countdown.SECOND;
+        this.hasMinutes = hasMinutes;
+
+        digitField = new int[digits];
+        digitDivisor = new int[digits];
+        digitBlankable = new boolean[digits];
+        digitFirstSegment = new int[digits];
+        segmentShape = new int[segments];
+        segmentColumn = new int[segments];
+
+        int digit = 0, segment = 0;
+        long separators = 0;
+        int firstField = -1;
+        for(int i = 0; i < pattern.length(); i++){
+            char c = pattern.charAt(i);
+            int column = (digit - 1) * SegmentShapes.DIGIT_COLUMNS;
+            if(c == ':' || c == '.') {
+                int[] shapes = c == ':'
+                        ? new int[]{SegmentShapes.COLON_UPPER, SegmentShapes.COLON_LOWER}
+                        : new int[]{SegmentShapes.POINT};
+                for(int shape : shapes){
+                    separators |= 1L << segment;
+                    segmentShape[segment] = shape;
+                    segmentColumn[segment++] = column;
+                }
+                continue;
+            }
+
+            int field = c == 'm' ? FIELD_MINUTES : c == 's' ? FIELD_SECONDS : FIELD_TENTHS;
+            int remaining = 0;
+            for(int j = i + 1; j < pattern.length() && pattern.charAt(j) == c; j++){
+                remaining++;
+            }
+            if(firstField == -1)
+                firstField = field;
+            digitField[digit] = field;
+            digitDivisor[digit] = pow10(remaining);
+            //solo se apagan los ceros a la izquierda del primer campo, y nunca su ultimo digito
+            digitBlankable[digit] = field == firstField && remaining > 0;
+            digitFirstSegment[digit] = segment;
+            column = digit * SegmentShapes.DIGIT_COLUMNS;
+            for(int shape = 0; shape < SevenSegment.SEGMENTS_PER_DIGIT; shape++){
+                segmentShape[segment] = shape;
+                segmentColumn[segment++] = column;
+            }
+            digit++;
+        }
+        this.separatorMask = separators;
+
+        //el primer campo no tiene limite superior mas que su cantidad de digitos
+        int firstFieldDigits = firstField == FIELD_MINUTES ? minuteDigits
+                : firstField == FIELD_SECONDS ? secondDigits : 1;
+        long firstFieldMax = pow10(firstFieldDigits) - 1;
+        long maxSeconds = firstField == FIELD_MINUTES ? firstFieldMax * 60 + 59
+                : firstField == FIELD_SECONDS ? firstFieldMax : 0;
+        this.maxUnits = hasTenths ? maxSeconds * 10 + 9 : maxSeconds;
+    }
+
+    /**
+     * Devuelve el formato para un patron. Los formatos se crean la primera vez que se piden y luego
+     * se reutilizan, de forma que dos relojes con el mismo patron comparten la misma instancia
+     * @throws IllegalArgumentException si el patron no es valido
+     */
+    public static synchronized ClockFormat of(String pattern){
+        if(formats == null)
+            formats = new HashMap<>();
+        ClockFormat format = formats.get(pattern);
+        if(format == null) {
+            format = new ClockFormat(pattern);
+            formats.put(pattern, format);
+        }
+        return format;
+    }
+
+    private static int pow10(int exponent){
+        int result = 1;
+        for(int i = 0; i < exponent; i++){
+            result *= 10;
+        }
+        return result;
+    }
+
+    public String getPattern(){
+        return pattern;
+    }
+
+    /**
+     * @return cantidad de digitos, sin contar los separadores
+     */
+    public int getDigits(){
+        return digits;
+    }
+
+    /**
+     * @return cantidad de segmentos, incluyendo los separadores. Es la cantidad de bits que se
+     * usan de cada mascara
+     */
+    public int getSegments(){
+        return segments;
+    }
+
+    /**
+     * @return columnas de la grilla que ocupan los digitos, sin el padding
+     */
+    public int getColumns(){
+        return columns;
+    }
+
+    /**
+     * @return milisegundos que representa cada unidad del valor mostrado: un segundo, o una
+     * decima si el formato tiene decimas
+     */
+    public long getResolutionMillis(){
+        return resolutionMillis;
+    }
+
+    /**
+     * @return mayor valor que puede mostrar el formato, en unidades de {@link #getResolutionMillis()}
+     */
+    public long getMaxUnits(){
+        return maxUnits;
+    }
+
+    /**
+     * @return mayor tiempo que puede mostrar el formato
+     */
+    public long getMaxMillis(){
+        return maxUnits * resolutionMillis;
+    }
+
+    /**
+     * @param millis tiempo restante
+     * @return valor que se debe mostrar, en unidades de {@link #getResolutionMillis()}. Se redondea
+     * hacia arriba, de forma que se muestra cero solo cuando el tiempo se acabo, y se limita al
+     * maximo del formato
+     */
+    public long unitsFor(long millis){
+        if(millis <= 0)
+            return 0;
+        return Math.min(maxUnits, (millis + resolutionMillis - 1) / resolutionMillis);
+    }
+
+    /**
+     * @param units valor entre 0 y {@link #getMaxUnits()}
+     * @param digit posicion del digito, empezando de la izquierda y sin contar separadores
+     * @return digito que se muestra en la posicion, o {@link SevenSegment#BLANK} si es un cero a la
+     * izquierda
+     */
+    public int digitAt(long units, int digit){
+        long fieldValue = fieldValue(units, digitField[digit]);
+        int divisor = digitDivisor[digit];
+        if(digitBlankable[digit] && fieldValue < divisor)
+            return SevenSegment.BLANK;
+        return (int) (fieldValue / divisor % 10);
+    }
+
+    private long fieldValue(long units, int field){
+        long seconds = units;
+        if(resolutionMillis == TENTH) {
+            if(field == FIELD_TENTHS)
+                return units % 10;
+            seconds = units / 10;
+        }
+        if(!hasMinutes)
+            return seconds;
+        return field == FIELD_MINUTES ? seconds / 60 : seconds % 60;
+    }
+
+    /**
+     * @param units valor entre 0 y {@link #getMaxUnits()}
+     * @return mascara con los segmentos activos de todos los digitos y separadores
+     */
+    public long maskFor(long units){
+        long mask = separatorMask;
+        for(int digit = 0; digit < digits; digit++){
+            long digitMask = SevenSegment.digitMask(digitAt(units, digit));
+            mask |= digitMask << digitFirstSegment[digit];
+        }
+        return mask;
+    }
+
+    /**
+     * @return true si el segmento esta activo en la mascara
+     */
+    public static boolean isActive(long mask, int segment){
+        return (mask & (1L << segment)) != 0;
+    }
+
+    /**
+     * @return true si cambia algun segmento del digito entre una mascara y otra
+     */
+    public boolean digitChanged(long oldMask, long newMask, int digit){
+        long digitBits = (1L << SevenSegment.SEGMENTS_PER_DIGIT) - 1;
+        return ((oldMask ^ newMask) >>> digitFirstSegment[digit] & digitBits) != 0;
+    }
+
+    /**
+     * @return bit de la mascara en el que empieza el segmento A del digito
+     */
+    public int digitFirstSegment(int digit){
+        return digitFirstSegment[digit];
+    }
+
+    /**
+     * @return true si el segmento es un separador, que esta siempre activo
+     */
+    public boolean isSeparator(int segment){
+        return isActive(separatorMask, segment);
+    }
+
+    /**
+     * @return forma de {@link SegmentShapes} que se usa para dibujar el segmento
+     */
+    public int segmentShape(int segment){
+        return segmentShape[segment];
+    }
+
+    /**
+     * @return columna de la grilla, sin padding, desde la que se dibuja la forma del segmento
+     */
+    public int segmentColumn(int segment){
+        return segmentColumn[segment];
+    }
+
+    /**
+     * @return cantidad de floats que ocupan las coordenadas de todos los segmentos
+     */
+    public int coordinateCount(){
+        int count = 0;
+        for(int segment = 0; segment < segments; segment++){
+            count += 2 * SegmentShapes.pointCount(segmentShape[segment]);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
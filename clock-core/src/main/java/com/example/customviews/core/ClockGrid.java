@@ -0,0 +1,222 @@
+package com.example.customviews.core;
+
+/**
+ * Grilla sobre la que se dibujan los digitos. Para el formato de dos digitos es cuadrada; los
+ * formatos con mas digitos agregan columnas.
+ * Calcula, a partir del espacio disponible, el tamaño del area de dibujo, el tamaño de cada celda
+ * y el offset necesario para centrar la grilla, y a partir de eso las coordenadas de los segmentos.
+ * No depende de Android.
+ */
+public final class ClockGrid {
+
+    /**
+     * Cantidad de floats que ocupan las coordenadas de todos los segmentos de
+     * {@link ClockFormat#SECONDS}
+     */
+    public static final int SEGMENT_COORDINATES = 2 * SegmentShapes.POINTS_PER_DIGIT * SevenSegment.DIGITS;
+
+    private ClockFormat format = ClockFormat.SECONDS;
+    private float canvasSize;
+    private float width;
+    private float height;
+    private float cellSize;
+    private int nColumns;
+    private int nRows;
+    private int cellPadding;
+    private float horizontalOffset;
+    private float verticalOffset;
+
+    /**
+     * Setea los valores necesarios para dibujar los numeros, en base al espacio disponible para
+     * dibujar. La grilla queda centrada en el area sin padding.
+     * @param availableWidth ancho disponible para dibujar, incluyendo el padding
+     * @param availableHeight alto disponible para dibujar, incluyendo el padding
+     * @param cellPadding celdas libres alrededor de los digitos
+     */
+    public void setup(float availableWidth,
+                      float availableHeight,
+                      int paddingLeft,
+                      int paddingTop,
+                      int paddingRight,
+                      int paddingBottom,
+                      int cellPadding){
+        setup(availableWidth, availableHeight, paddingLeft, paddingTop, paddingRight, paddingBottom,
+                cellPadding, ClockFormat.SECONDS);
+    }
+
+    /**
+     * Igual que {@link #setup(float, float, int, int, int, int, int)}, para un formato con
+     * cualquier cantidad de digitos. Las celdas son cuadradas, asi que el area que ocupa la grilla
+     * tiene la proporcion del formato
+     */
+    public void setup(float availableWidth,
+                      float availableHeight,
+                      int paddingLeft,
+                      int paddingTop,
+                      int paddingRight,
+                      int paddingBottom,
+                      int cellPadding,
+                      ClockFormat format){
+        float contentWidth = availableWidth - paddingLeft - paddingRight;
+        float contentHeight = availableHeight - paddingTop - paddingBottom;
+        int columns = columnsFor(cellPadding, format);
+        int rows = rowsFor(cellPadding);
+        float cellSize = Math.max(0, Math.min(contentWidth / columns, contentHeight / rows));
+        set(format,
+                cellSize,
+                cellPadding,
+                paddingLeft + (contentWidth - cellSize * columns) / 2,
+                paddingTop + (contentHeight - cellSize * rows) / 2);
+    }
+
+    /**
+     * Setea la grilla con un tamaño y una posicion ya calculados
+     * @param canvasSize lado del area cuadrada en la que se dibuja, se usa 0 si es negativo
+     * @param cellPadding celdas libres alrededor de los digitos
+     * @param horizontalOffset coordenada x del borde izquierdo de la grilla
+     * @param verticalOffset coordenada y del borde superior de la grilla
+     */
+    public void set(float canvasSize, int cellPadding, float horizontalOffset, float verticalOffset){
+        set(ClockFormat.SECONDS,
+                Math.max(0, canvasSize) / columnsFor(cellPadding),
+                cellPadding,
+                horizontalOffset,
+                verticalOffset);
+    }
+
+    /**
+     * Setea la grilla de un formato con un tamaño de celda y una posicion ya calculados
+     * @param cellSize el tamaño de una celda de la grilla
+     * @param cellPadding celdas libres alrededor de los digitos
+     * @param horizontalOffset coordenada x del borde izquierdo de la grilla
+     * @param verticalOffset coordenada y del borde superior de la grilla
+     */
+    public void set(ClockFormat format, float cellSize, int cellPadding, float horizontalOffset, float verticalOffset){
+        this.format = format;
+        this.cellSize = Math.max(0, cellSize);
+        this.cellPadding = cellPadding;
+        this.nColumns = columnsFor(cellPadding, format);
+        this.nRows = rowsFor(cellPadding);
+        this.width = this.cellSize * nColumns;
+        this.height = this.cellSize * nRows;
+        this.canvasSize = Math.min(width, height);
+        this.horizontalOffset = horizontalOffset;
+        this.verticalOffset = verticalOffset;
+    }
+
+    public ClockFormat getFormat(){
+        return format;
+    }
+
+    /**
+     * @return lado del cuadrado mas grande que entra en la grilla; para
+     * {@link ClockFormat#SECONDS} es el lado de la grilla
+     */
+    public float getCanvasSize(){
+        return canvasSize;
+    }
+
+    /**
+     * @return ancho del area que ocupa la grilla
+     */
+    public float getWidth(){
+        return width;
+    }
+
+    /**
+     * @return alto del area que ocupa la grilla
+     */
+    public float getHeight(){
+        return height;
+    }
+
+    public float getCellSize(){
+        return cellSize;
+    }
+
+    public int getColumns(){
+        return nColumns;
+    }
+
+    public int getRows(){
+        return nRows;
+    }
+
+    public int getCellPadding(){
+        return cellPadding;
+    }
+
+    public float getHorizontalOffset(){
+        return horizontalOffset;
+    }
+
+    public float getVerticalOffset(){
+        return verticalOffset;
+    }
+
+    /**
+     * @param position posicion del digito, empezando de la izquierda
+     * @return coordenada x de la columna 0 del digito
+     */
+    public float digitLeft(int position){
+        return (position * SegmentShapes.DIGIT_COLUMNS + cellPadding) * cellSize + horizontalOffset;
+    }
+
+    /**
+     * @return coordenada y de la fila 0 de los digitos; el segmento A empieza en
+     * {@link SegmentShapes#DIGIT_FIRST_ROW}
+     */
+    public float digitOriginTop(){
+        return cellPadding * cellSize + verticalOffset;
+    }
+
+    /**
+     * @return coordenada y del borde superior de los digitos
+     */
+    public float digitTop(){
+        return (SegmentShapes.DIGIT_FIRST_ROW + cellPadding) * cellSize + verticalOffset;
+    }
+
+    /**
+     * Calcula las coordenadas de los vertices de todos los segmentos del formato de la grilla, en el
+     * mismo orden que los bits de {@link ClockFormat#maskFor(long)}
+     * @param out arreglo de al menos {@link ClockFormat#coordinateCount()} floats en el que se
+     *            escriben los pares (x, y)
+     * @param starts arreglo de al menos {@link ClockFormat#getSegments()} + 1 enteros. En
+     *               {@code starts[i]} se escribe la posicion de {@code out} en la que empieza el
+     *               segmento {@code i}, y en el ultimo la cantidad total de floats escritos
+     */
+    public void fillSegments(float[] out, int[] starts){
+        float top = digitOriginTop();
+        int written = 0;
+        int segments = format.getSegments();
+        for(int segment = 0; segment < segments; segment++){
+            float left = (format.segmentColumn(segment) + cellPadding) * cellSize + horizontalOffset;
+            starts[segment] = written;
+            written += SegmentShapes.fillSegment(out, written, format.segmentShape(segment), left, top, cellSize);
+        }
+        starts[segments] = written;
+    }
+
+    /**
+     * @param cellPadding celdas de padding alrededor de los digitos
+     * @return cantidad de columnas (y filas) de la grilla de {@link ClockFormat#SECONDS}
+     */
+    public static int columnsFor(int cellPadding){
+        return columnsFor(cellPadding, ClockFormat.SECONDS);
+    }
+
+    /**
+     * @return cantidad de columnas de la grilla de un formato
+     */
+    public static int columnsFor(int cellPadding, ClockFormat format){
+        return format.getColumns() + (cellPadding * 2);
+    }
+
+    /**
+     * @return cantidad de filas de la grilla, que no depende del formato
+     */
+    public static int rowsFor(int cellPadding){
+        return SegmentShapes.ROWS + (cellPadding * 2);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.customviews.core;
+
+/**
+ * Metricas de rendimiento de un reloj: duracion de cada draw y de cada measure, retraso de cada
+ * tick respecto del instante para el que se programo, e invalidaciones por segundo.
+ *
+ * Los valores se guardan en {@link LatencyHistogram}s de tamaño fijo, asi que registrar no crea
+ * objetos. Los metodos {@code record} se llaman desde el hilo principal; {@link #snapshot()} y
+ * {@link #reset()} se pueden llamar desde cualquier hilo.
+ */
+public final class ClockMetrics {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private final LatencyHistogram drawNanos = new LatencyHistogram(NANOS_PER_SECOND);
+    private final LatencyHistogram measureNanos = new LatencyHistogram(NANOS_PER_SECOND);
+    private final LatencyHistogram tickLatenessMillis = new LatencyHistogram(10 * MILLIS_PER_SECOND);
+    private final LatencyHistogram invalidationsPerSecond = new LatencyHistogram(MILLIS_PER_SECOND);
+
+    /**
+     * Inicio del segundo en el que se estan contando invalidaciones, o -1 si no se conto ninguna
+     */
+    private long invalidationWindowStart = -1;
+    private int invalidationWindowCount;
+
+    public void recordDraw(long nanos){
+        drawNanos.record(nanos);
+    }
+
+    public void recordMeasure(long nanos){
+        measureNanos.record(nanos);
+    }
+
+    /**
+     * @param latenessMillis milisegundos entre el instante para el que se programo el tick y el
+     *                       instante en el que se ejecuto
+     */
+    public void recordTickLateness(long latenessMillis){
+        tickLatenessMillis.record(latenessMillis);
+    }
+
+    /**
+     * Cuenta una invalidacion. Cuando termina un segundo en el que hubo invalidaciones, se registra
+     * cuantas hubo; los segundos sin ninguna (reloj detenido) no se registran
+     * @param nowMillis instante de la invalidacion, en una base de tiempo monotona
+     */
+    public void recordInvalidation(long nowMillis){
+        if(invalidationWindowStart >= 0 && nowMillis - invalidationWindowStart >= MILLIS_PER_SECOND) {
+            invalidationsPerSecond.record(invalidationWindowCount);
+            invalidationWindowStart = -1;
+        }
+        if(invalidationWindowStart < 0) {
+            invalidationWindowStart = nowMillis;
+            invalidationWindowCount = 0;
+        }
+        invalidationWindowCount++;
+    }
+
+    /**
+     * @return copia de los histogramas. El segundo de invalidaciones en curso no se incluye
+     */
+    public Snapshot snapshot(){
+        return new Snapshot(drawNanos.snapshot(),
+                measureNanos.snapshot(),
+                tickLatenessMillis.snapshot(),
+                invalidationsPerSecond.snapshot());
+    }
+
+    /**
+     * @return copia de los histogramas, dejandolos vacios; sirve para leer las metricas por intervalos
+     */
+    public Snapshot snapshotAndReset(){
+        return new Snapshot(drawNanos.snapshotAndReset(),
+                measureNanos.snapshotAndReset(),
+                tickLatenessMillis.snapshotAndReset(),
+                invalidationsPerSecond.snapshotAndReset());
+    }
+
+    /**
+     * Vacia los histogramas. El segundo de invalidaciones en curso se sigue contando
+     */
+    public void reset(){
+        drawNanos.reset();
+        measureNanos.reset();
+        tickLatenessMillis.reset();
+        invalidationsPerSecond.reset();
+    }
+
+    /**
+     * Copia inmutable de las metricas de un reloj
+     */
+    public static final class Snapshot {
+
+        public final LatencyHistogram.Snapshot drawNanos;
+        public final LatencyHistogram.Snapshot measureNanos;
+        public final LatencyHistogram.Snapshot tickLatenessMillis;
+        public final LatencyHistogram.Snapshot invalidationsPerSecond;
+
+        Snapshot(LatencyHistogram.Snapshot drawNanos,
+                 LatencyHistogram.Snapshot measureNanos,
+                 LatencyHistogram.Snapshot tickLatenessMillis,
+                 LatencyHistogram.Snapshot invalidationsPerSecond) {
+            this.drawNanos = drawNanos;
+            this.measureNanos = measureNanos;
+            this.tickLatenessMillis = tickLatenessMillis;
+            this.invalidationsPerSecond = invalidationsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return "draw(ns): " + drawNanos
+                    + "\nmeasure(ns): " + measureNanos
+                    + "\ntick lateness(ms): " + tickLatenessMillis
+                    + "\ninvalidations/s: " + invalidationsPerSecond;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.customviews.core;
+
+/**
+ * Combina los comandos que llegan para cada reloj entre un frame y el siguiente, de forma que en
+ * cada frame se aplica a lo sumo un cambio de estado por reloj, sin importar cuantos comandos
+ * llegaron. Por cada reloj se guarda solo lo ultimo que se pidio:
+ * <ul>
+ *     <li>el estado de marcha ({@link ClockCommand#START} o {@link ClockCommand#STOP}), y</li>
+ *     <li>el valor ({@link ClockCommand#RESET} o {@link ClockCommand#SET_VALUE} con sus milisegundos).</li>
+ * </ul>
+ * Al aplicarlos primero se cambia el valor y despues el estado de marcha.
+ *
+ * {@link #post(int, int, long)} se llama desde el hilo que lee los comandos y {@link #drain(ClockCommand.Target)}
+ * desde el hilo principal. Los arreglos se crean una sola vez, asi que ninguno de los dos crea
+ * objetos, y el hilo principal solo toma el lock para copiar los relojes pendientes.
+ */
+public final class CommandCoalescer {
+
+    private static final int NONE = 0;
+
+    private final int capacity;
+    private final int[] pendingRun;
+    private final int[] pendingValueOp;
+    private final long[] pendingValue;
+    private final int[] pendingIds;
+    private int pendingCount;
+
+    //copias del hilo principal, para aplicar los comandos fuera del lock
+    private final int[] drainIds;
+    private final int[] drainRun;
+    private final int[] drainValueOp;
+    private final long[] drainValue;
+
+    private long received;
+    private long rejected;
+
+    /**
+     * @param capacity cantidad de relojes; los comandos para ids mayores se descartan
+     */
+    public CommandCoalescer(int capacity) {
+        this.capacity = capacity;
+        pendingRun = new int[capacity];
+        pendingValueOp = new int[capacity];
+        pendingValue = new long[capacity];
+        pendingIds = new int[capacity];
+        drainIds = new int[capacity];
+        drainRun = new int[capacity];
+        drainValueOp = new int[capacity];
+        drainValue = new long[capacity];
+    }
+
+    /**
+     * Registra un comando, reemplazando al anterior del mismo tipo para ese reloj
+     * @return true si antes no habia ningun comando pendiente, es decir si hay que programar un
+     * {@link #drain(ClockCommand.Target)}
+     */
+    public synchronized boolean post(int opcode, int clockId, long value){
+        if(ClockCommand.frameLength(opcode) < 0)
+            throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        received++;
+        if(clockId < 0 || clockId >= capacity) {
+            rejected++;
+            return false;
+        }
+        boolean wasEmpty = pendingCount == 0;
+        if(pendingRun[clockId] == NONE && pendingValueOp[clockId] == NONE)
+            pendingIds[pendingCount++] = clockId;
+        switch (opcode){
+            case ClockCommand.START:
+            case ClockCommand.STOP:
+                pendingRun[clockId] = opcode;
+                break;
+            default:
+                pendingValueOp[clockId] = opcode;
+                pendingValue[clockId] = value;
+        }
+        return wasEmpty;
+    }
+
+    /**
+     * Aplica los comandos pendientes, uno combinado por reloj
+     * @param target relojes; los ids que no tiene se ignoran
+     * @return cantidad de relojes que cambiaron
+     */
+    public int drain(ClockCommand.Target target){
+        int count;
+        synchronized (this) {
+            count = pendingCount;
+            for(int i = 0; i < count; i++){
+                int clockId = pendingIds[i];
+                drainIds[i] = clockId;
+                drainRun[i] = pendingRun[clockId];
+                drainValueOp[i] = pendingValueOp[clockId];
+                drainValue[i] = pendingValue[clockId];
+                pendingRun[clockId] = NONE;
+                pendingValueOp[clockId] = NONE;
+            }
+            pendingCount = 0;
+        }
+
+        int clockCount = target.getClockCount();
+        int applied = 0;
+        for(int i = 0; i < count; i++){
+            int clockId = drainIds[i];
+            if(clockId >= clockCount)
+                continue;
+            if(drainValueOp[i] == ClockCommand.RESET)
+                target.reset(clockId);
+            else if(drainValueOp[i] == ClockCommand.SET_VALUE)
+                target.setDurationMillis(clockId, drainValue[i]);
+            if(drainRun[i] == ClockCommand.START)
+                target.start(clockId);
+            else if(drainRun[i] == ClockCommand.STOP)
+                target.stop(clockId);
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * @return comandos recibidos en total, incluyendo los combinados y los rechazados
+     */
+    public synchronized long getReceivedCount(){
+        return received;
+    }
+
+    /**
+     * @return comandos descartados porque el id de reloj no existe
+     */
+    public synchronized long getRejectedCount(){
+        return rejected;
+    }
+}
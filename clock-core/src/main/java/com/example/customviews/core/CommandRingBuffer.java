@@ -0,0 +1,93 @@
+package com.example.customviews.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola circular de comandos empaquetados con {@link ClockCommand#pack(int, int, long)}, para un
+ * solo hilo productor (un control remoto, un sensor) y un solo hilo consumidor (el principal).
+ * El arreglo se crea una sola vez y no se usan locks: cada hilo solo escribe su propio indice, y
+ * lo publica con un store ordenado despues de escribir o leer el slot.
+ *
+ * Con mas de un productor se debe usar una cola por productor, o sincronizar los
+ * {@link #offer(long)} externamente.
+ */
+public final class CommandRingBuffer {
+
+    public interface Consumer {
+        void accept(long command);
+    }
+
+    private final long[] buffer;
+    private final int mask;
+    /**
+     * Siguiente posicion a leer; solo la escribe el consumidor
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Siguiente posicion a escribir; solo la escribe el productor
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Ultimo head que vio el productor, para no leer el atomico en cada offer
+     */
+    private long cachedHead;
+
+    /**
+     * @param capacity cantidad de comandos que entran; se redondea a la siguiente potencia de 2
+     */
+    public CommandRingBuffer(int capacity) {
+        if(capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity)
+            size <<= 1;
+        buffer = new long[size];
+        mask = size - 1;
+    }
+
+    public int capacity(){
+        return buffer.length;
+    }
+
+    /**
+     * Agrega un comando. Solo se llama desde el hilo productor
+     * @return false si la cola esta llena y el comando se descarto
+     */
+    public boolean offer(long command){
+        long currentTail = tail.get();
+        if(currentTail - cachedHead >= buffer.length) {
+            cachedHead = head.get();
+            if(currentTail - cachedHead >= buffer.length)
+                return false;
+        }
+        buffer[(int) currentTail & mask] = command;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Entrega al consumidor todos los comandos que hay en la cola, en el orden en que llegaron.
+     * Solo se llama desde el hilo consumidor
+     * @return cantidad de comandos entregados
+     */
+    public int drain(Consumer consumer){
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        for(long i = currentHead; i < currentTail; i++){
+            consumer.accept(buffer[(int) i & mask]);
+        }
+        head.lazySet(currentTail);
+        return (int) (currentTail - currentHead);
+    }
+
+    /**
+     * @return cantidad aproximada de comandos en la cola
+     */
+    public int size(){
+        return (int) (tail.get() - head.get());
+    }
+
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+}
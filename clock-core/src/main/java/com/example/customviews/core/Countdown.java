@@ -0,0 +1,167 @@
+package com.example.customviews.core;
+
+/**
+ * Cuenta regresiva anclada a un deadline en un reloj monotono.
+ * Mientras corre solo guarda el instante en el que llega a cero, de forma que el valor mostrado
+ * se calcula a partir del tiempo actual y los retrasos del handler no se acumulan. Cuando se
+ * detiene guarda los milisegundos restantes, incluyendo la fraccion de segundo.
+ *
+ * No depende de Android: todos los metodos reciben el tiempo actual en milisegundos
+ * (por ejemplo {@code SystemClock.uptimeMillis()}).
+ */
+public final class Countdown {
+
+    public static final long SECOND = 1000L;
+
+    private long durationMillis;
+    private long remainingMillis;
+    private long deadline;
+    private boolean running;
+
+    /**
+     * @param durationMillis tiempo desde el que se cuenta, y al que vuelve el reloj con {@link #reset(long)}
+     */
+    public Countdown(long durationMillis) {
+        this.durationMillis = durationMillis;
+        this.remainingMillis = durationMillis;
+    }
+
+    /**
+     * Inicia o reanuda la cuenta regresiva. No hace nada si ya esta corriendo o llego a cero
+     */
+    public void start(long now){
+        if(!canStart(running, remainingMillis))
+            return;
+        deadline = now + remainingMillis;
+        running = true;
+    }
+
+    /**
+     * Detiene la cuenta regresiva, conservando el tiempo restante
+     */
+    public void stop(long now){
+        if(!running)
+            return;
+        remainingMillis = remainingAt(deadline, now);
+        running = false;
+    }
+
+    /**
+     * Regresa el reloj a su duracion inicial, sin cambiar si esta corriendo o no
+     */
+    public void reset(long now){
+        remainingMillis = durationMillis;
+        if(running)
+            deadline = now + durationMillis;
+    }
+
+    /**
+     * Cambia la duracion y el tiempo restante, sin cambiar si esta corriendo o no
+     */
+    public void setDuration(long durationMillis, long now){
+        this.durationMillis = durationMillis;
+        reset(now);
+    }
+
+    /**
+     * @return mientras corre, instante en el que llega a cero
+     */
+    public long getDeadline(){
+        return deadline;
+    }
+
+    public long getDurationMillis(){
+        return durationMillis;
+    }
+
+    public boolean isRunning(){
+        return running;
+    }
+
+    /**
+     * @return milisegundos que faltan para llegar a cero
+     */
+    public long remainingMillis(long now){
+        return remainingMillis(running, deadline, remainingMillis, now);
+    }
+
+    /**
+     * @return segundos que se deben mostrar: se redondea hacia arriba, de forma que se muestra cero
+     * solo cuando el tiempo se acabo
+     */
+    public int displayedSeconds(long now){
+        return (int) ((remainingMillis(now) + SECOND - 1) / SECOND);
+    }
+
+    /**
+     * @return true si esta corriendo y ya llego a cero
+     */
+    public boolean hasExpired(long now){
+        return hasExpired(running, deadline, now);
+    }
+
+    /**
+     * Marca la cuenta como terminada. Se debe llamar una sola vez cuando {@link #hasExpired(long)}
+     * devuelve true, para que el aviso de fin (la bocina) no se repita
+     */
+    public void finish(){
+        running = false;
+        remainingMillis = 0;
+    }
+
+    /**
+     * @return mientras corre, instante en el que cambia el valor mostrado, es decir el siguiente
+     * limite de segundo exacto. Si el tick se retrasa mas de un segundo, el siguiente limite se
+     * calcula a partir del tiempo actual y los ticks perdidos se combinan en uno solo.
+     */
+    public long nextChangeTime(long now){
+        return nextChangeTime(now, SECOND);
+    }
+
+    /**
+     * Igual que {@link #nextChangeTime(long)}, para un valor mostrado con otra resolucion
+     * @param resolutionMillis milisegundos que representa cada unidad del valor mostrado, por
+     *                         ejemplo una decima (ver {@link ClockFormat#getResolutionMillis()})
+     */
+    public long nextChangeTime(long now, long resolutionMillis){
+        return nextChangeTime(deadline, remainingMillis(now), now, resolutionMillis);
+    }
+
+    /*
+     * Reglas de cada transicion, compartidas con CountdownTable
+     */
+
+    /**
+     * Solo se puede iniciar una cuenta detenida a la que le queda tiempo
+     */
+    static boolean canStart(boolean running, long remainingMillis){
+        return !running && remainingMillis > 0;
+    }
+
+    /**
+     * @return milisegundos que faltan para el deadline de una cuenta que corre
+     */
+    static long remainingAt(long deadline, long now){
+        return Math.max(0, deadline - now);
+    }
+
+    static long remainingMillis(boolean running, long deadline, long remainingMillis, long now){
+        if(!running)
+            return remainingMillis;
+        return remainingAt(deadline, now);
+    }
+
+    static boolean hasExpired(boolean running, long deadline, long now){
+        return running && deadline <= now;
+    }
+
+    /**
+     * @param remaining milisegundos que faltan, como {@link #remainingMillis(long)}
+     */
+    static long nextChangeTime(long deadline, long remaining, long now, long resolutionMillis){
+        if(remaining <= 0)
+            return now;
+        long displayed = (remaining + resolutionMillis - 1) / resolutionMillis;
+        return deadline - (displayed - 1) * resolutionMillis;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.customviews.core;
+
+import java.util.Arrays;
+
+/**
+ * Varias cuentas regresivas guardadas en arreglos de primitivos, una posicion por reloj.
+ * Cada posicion se comporta igual que un {@link Countdown}, pero sin un objeto por reloj: sirve
+ * para vistas que muestran muchos relojes a la vez y los recorren en cada tick. Las reglas de
+ * cada transicion son las de {@link Countdown}, aplicadas sobre los arreglos.
+ *
+ * No depende de Android ni es thread-safe: todos los metodos reciben el tiempo actual en
+ * milisegundos y se deben llamar desde un solo hilo.
+ */
+public final class CountdownTable {
+
+    private final long[] durationMillis;
+    private final long[] remainingMillis;
+    private final long[] deadlines;
+    private final boolean[] running;
+
+    /**
+     * @param size cantidad de relojes
+     * @param durationMillis duracion inicial de todos los relojes
+     */
+    public CountdownTable(int size, long durationMillis) {
+        this.durationMillis = new long[size];
+        this.remainingMillis = new long[size];
+        this.deadlines = new long[size];
+        this.running = new boolean[size];
+        Arrays.fill(this.durationMillis, durationMillis);
+        Arrays.fill(this.remainingMillis, durationMillis);
+    }
+
+    public int size(){
+        return running.length;
+    }
+
+    /**
+     * @see Countdown#start(long)
+     */
+    public void start(int index, long now){
+        if(!Countdown.canStart(running[index], remainingMillis[index]))
+            return;
+        deadlines[index] = now + remainingMillis[index];
+        running[index] = true;
+    }
+
+    /**
+     * @see Countdown#stop(long)
+     */
+    public void stop(int index, long now){
+        if(!running[index])
+            return;
+        remainingMillis[index] = Countdown.remainingAt(deadlines[index], now);
+        running[index] = false;
+    }
+
+    /**
+     * @see Countdown#reset(long)
+     */
+    public void reset(int index, long now){
+        remainingMillis[index] = durationMillis[index];
+        if(running[index])
+            deadlines[index] = now + durationMillis[index];
+    }
+
+    /**
+     * @see Countdown#setDuration(long, long)
+     */
+    public void setDuration(int index, long durationMillis, long now){
+        this.durationMillis[index] = durationMillis;
+        reset(index, now);
+    }
+
+    /**
+     * @return mientras corre, instante en el que el reloj llega a cero
+     */
+    public long getDeadline(int index){
+        return deadlines[index];
+    }
+
+    public long getDurationMillis(int index){
+        return durationMillis[index];
+    }
+
+    public boolean isRunning(int index){
+        return running[index];
+    }
+
+    /**
+     * @return true si al menos un reloj esta corriendo
+     */
+    public boolean isAnyRunning(){
+        for(boolean r : running){
+            if(r)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return instante en el que llega a cero el primero de los relojes que corren, o
+     * {@link Long#MAX_VALUE} si ninguno corre
+     */
+    public long earliestDeadline(){
+        long earliest = Long.MAX_VALUE;
+        for(int i = 0; i < running.length; i++){
+            if(running[i] && deadlines[i] < earliest)
+                earliest = deadlines[i];
+        }
+        return earliest;
+    }
+
+    /**
+     * @see Countdown#remainingMillis(long)
+     */
+    public long remainingMillis(int index, long now){
+        return Countdown.remainingMillis(running[index], deadlines[index], remainingMillis[index], now);
+    }
+
+    /**
+     * @see Countdown#hasExpired(long)
+     */
+    public boolean hasExpired(int index, long now){
+        return Countdown.hasExpired(running[index], deadlines[index], now);
+    }
+
+    /**
+     * @see Countdown#finish()
+     */
+    public void finish(int index){
+        running[index] = false;
+        remainingMillis[index] = 0;
+    }
+
+    /**
+     * @see Countdown#nextChangeTime(long, long)
+     */
+    public long nextChangeTime(int index, long now, long resolutionMillis){
+        return Countdown.nextChangeTime(deadlines[index], remainingMillis(index, now), now, resolutionMillis);
+    }
+}
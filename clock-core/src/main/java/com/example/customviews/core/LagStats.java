@@ -0,0 +1,56 @@
+package com.example.customviews.core;
+
+/**
+ * Estadisticas del retraso con el que se muestra cada cambio del valor de un reloj, respecto del
+ * instante exacto en el que deberia haber cambiado. Solo guarda contadores, asi que registrar una
+ * muestra no crea objetos. No es thread-safe: se debe usar desde un solo hilo.
+ */
+public final class LagStats {
+
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+    private long lastMillis;
+
+    /**
+     * @param lagMillis milisegundos entre el instante ideal del cambio y el instante en el que se
+     *                  mostro. Los valores negativos se registran como cero
+     */
+    public void record(long lagMillis){
+        long lag = Math.max(0, lagMillis);
+        count++;
+        totalMillis += lag;
+        lastMillis = lag;
+        if(lag > maxMillis)
+            maxMillis = lag;
+    }
+
+    public void reset(){
+        count = 0;
+        totalMillis = 0;
+        maxMillis = 0;
+        lastMillis = 0;
+    }
+
+    /**
+     * @return cantidad de cambios registrados
+     */
+    public long getCount(){
+        return count;
+    }
+
+    public long getMaxMillis(){
+        return maxMillis;
+    }
+
+    public long getLastMillis(){
+        return lastMillis;
+    }
+
+    /**
+     * @return retraso promedio, o 0 si no hay muestras
+     */
+    public double getMeanMillis(){
+        return count == 0 ? 0 : (double) totalMillis / count;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.customviews.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de tamaño fijo para duraciones y contadores, con buckets al estilo HDR: los valores
+ * chicos tienen un bucket cada uno, y a partir de ahi cada potencia de 2 se divide en
+ * {@link #SUB_BUCKETS} / 2 buckets, de forma que el error relativo de cada bucket es menor al 7%.
+ *
+ * Registrar un valor no crea objetos ni toma locks: solo incrementa contadores atomicos, asi que se
+ * puede registrar desde el hilo principal mientras otro hilo lee {@link #snapshot()}.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    /**
+     * Valores exactos antes del primer bucket logaritmico
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param highestTrackableValue mayor valor que se distingue; los valores mayores se cuentan en
+     *                              el ultimo bucket, aunque {@link Snapshot#getMax()} los refleja
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if(highestTrackableValue < SUB_BUCKETS)
+            highestTrackableValue = SUB_BUCKETS;
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(bucketIndex(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Registra un valor. Los valores negativos se registran como cero
+     */
+    public void record(long value){
+        long v = value < 0 ? 0 : value;
+        counts.incrementAndGet(bucketIndex(Math.min(v, highestTrackableValue)));
+        totalCount.incrementAndGet();
+        sum.addAndGet(v);
+        long current;
+        while (v > (current = max.get()) && !max.compareAndSet(current, v)) {
+            //otro hilo registro un maximo al mismo tiempo, se vuelve a comparar
+        }
+        while (v < (current = min.get()) && !min.compareAndSet(current, v)) {
+            //otro hilo registro un minimo al mismo tiempo, se vuelve a comparar
+        }
+    }
+
+    /**
+     * @return copia del estado actual
+     */
+    public Snapshot snapshot(){
+        return snapshot(false);
+    }
+
+    /**
+     * @return copia del estado actual, dejando el histograma vacio. Los valores que se registran
+     * mientras se copia quedan en la copia o en el histograma, pero no se pierden
+     */
+    public Snapshot snapshotAndReset(){
+        return snapshot(true);
+    }
+
+    /**
+     * Vacia el histograma
+     */
+    public void reset(){
+        snapshot(true);
+    }
+
+    private Snapshot snapshot(boolean reset){
+        long[] copy = new long[counts.length()];
+        long count = 0;
+        for(int i = 0; i < copy.length; i++){
+            copy[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            count += copy[i];
+        }
+        long total = reset ? sum.getAndSet(0) : sum.get();
+        long maxValue = reset ? max.getAndSet(0) : max.get();
+        long minValue = reset ? min.getAndSet(Long.MAX_VALUE) : min.get();
+        if(reset)
+            totalCount.addAndGet(-count);
+        return new Snapshot(copy, count, total, count == 0 ? 0 : minValue, maxValue);
+    }
+
+    /**
+     * @return cantidad de valores registrados desde el ultimo reset
+     */
+    public long getCount(){
+        return totalCount.get();
+    }
+
+    static int bucketIndex(long value){
+        if(value < SUB_BUCKETS)
+            return (int) value;
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * @return mayor valor que cae en el bucket
+     */
+    static long highestValueInBucket(int index){
+        if(index < SUB_BUCKETS)
+            return index;
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Copia inmutable de un histograma
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount(){
+            return count;
+        }
+
+        public long getMin(){
+            return min;
+        }
+
+        public long getMax(){
+            return max;
+        }
+
+        /**
+         * @return promedio, o 0 si no hay valores
+         */
+        public double getMean(){
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile entre 0 y 100, por ejemplo 99 para el p99
+         * @return valor por debajo del cual (o igual) esta el porcentaje pedido de los valores, con
+         * la precision del bucket. Nunca es mayor que {@link #getMax()}
+         */
+        public long getValueAtPercentile(double percentile){
+            if(count == 0)
+                return 0;
+            long target = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+            if(target < 1)
+                target = 1;
+            long seen = 0;
+            //el ultimo bucket tambien cuenta los valores mayores al que se puede distinguir
+            for(int i = 0; i < counts.length - 1; i++){
+                seen += counts[i];
+                if(seen >= target)
+                    return Math.min(highestValueInBucket(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count
+                    + " min=" + min
+                    + " p50=" + getValueAtPercentile(50)
+                    + " p99=" + getValueAtPercentile(99)
+                    + " max=" + max;
+        }
+    }
+}
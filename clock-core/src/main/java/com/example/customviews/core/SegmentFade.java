@@ -0,0 +1,144 @@
+package com.example.customviews.core;
+
+/**
+ * Fundido de los segmentos que cambian entre un valor y el siguiente. Cada segmento tiene un nivel
+ * entre 0 (inactivo) y 1 (activo) que se interpola desde el nivel que tenia cuando empezo el
+ * fundido, asi que si el valor vuelve a cambiar a mitad de camino, el segmento sigue desde donde
+ * estaba en lugar de saltar.
+ *
+ * Todo el estado esta preasignado: empezar, avanzar y consultar un fundido no crea objetos. No
+ * depende de Android: los metodos reciben el tiempo actual en milisegundos.
+ */
+public final class SegmentFade {
+
+    /**
+     * Cantidad maxima de segmentos: los bits de una mascara
+     */
+    public static final int MAX_SEGMENTS = 64;
+
+    private final float[] fromLevels = new float[MAX_SEGMENTS];
+    private long durationMillis;
+    private long targetMask;
+    /**
+     * Segmentos cuyo nivel no es el final mientras dura el fundido
+     */
+    private long changingMask;
+    private long startTime;
+    private float progress = 1f;
+
+    /**
+     * @param durationMillis duracion de cada fundido, o 0 para que los segmentos cambien de golpe
+     */
+    public SegmentFade(long durationMillis) {
+        setDurationMillis(durationMillis);
+    }
+
+    public void setDurationMillis(long durationMillis){
+        this.durationMillis = Math.max(0, durationMillis);
+    }
+
+    public long getDurationMillis(){
+        return durationMillis;
+    }
+
+    /**
+     * Pasa a una mascara sin fundido, terminando el que estuviera en curso
+     */
+    public void jumpTo(long mask){
+        targetMask = mask;
+        changingMask = 0;
+        progress = 1f;
+    }
+
+    /**
+     * Empieza un fundido hacia otra mascara, partiendo del nivel que tiene cada segmento en ese
+     * instante. Sin duracion equivale a {@link #jumpTo(long)}
+     * @return true si hay segmentos que animar
+     */
+    public boolean animateTo(long mask, long now){
+        update(now);
+        if(durationMillis == 0) {
+            jumpTo(mask);
+            return false;
+        }
+        long changing = 0;
+        for(int segment = 0; segment < MAX_SEGMENTS; segment++){
+            float level = level(segment);
+            fromLevels[segment] = level;
+            if(level != targetLevel(mask, segment))
+                changing |= 1L << segment;
+        }
+        targetMask = mask;
+        changingMask = changing;
+        if(changing == 0) {
+            progress = 1f;
+            return false;
+        }
+        startTime = now;
+        progress = 0f;
+        return true;
+    }
+
+    /**
+     * Avanza el fundido hasta un instante; los niveles quedan fijos hasta la siguiente llamada
+     * @return true si el fundido sigue en curso
+     */
+    public boolean update(long now){
+        if(progress >= 1f)
+            return false;
+        float fraction = (float) (now - startTime) / durationMillis;
+        progress = Math.max(0f, Math.min(1f, fraction));
+        if(progress >= 1f)
+            changingMask = 0;
+        return progress < 1f;
+    }
+
+    public boolean isRunning(){
+        return progress < 1f;
+    }
+
+    /**
+     * @return mascara a la que llega el fundido
+     */
+    public long getTargetMask(){
+        return targetMask;
+    }
+
+    /**
+     * @return segmentos que estan cambiando de nivel, o 0 si no hay un fundido en curso
+     */
+    public long getChangingMask(){
+        return changingMask;
+    }
+
+    /**
+     * @return nivel del segmento en el ultimo {@link #update(long)}: 0 inactivo, 1 activo
+     */
+    public float level(int segment){
+        float target = targetLevel(targetMask, segment);
+        if(progress >= 1f || !ClockFormat.isActive(changingMask, segment))
+            return target;
+        float from = fromLevels[segment];
+        return from + (target - from) * progress;
+    }
+
+    private static float targetLevel(long mask, int segment){
+        return ClockFormat.isActive(mask, segment) ? 1f : 0f;
+    }
+
+    /**
+     * Interpola dos colores ARGB canal por canal
+     * @param fraction 0 para {@code from}, 1 para {@code to}
+     */
+    public static int blend(int from, int to, float fraction){
+        int a = blendChannel(from >>> 24, to >>> 24, fraction);
+        int r = blendChannel(from >> 16 & 0xFF, to >> 16 & 0xFF, fraction);
+        int g = blendChannel(from >> 8 & 0xFF, to >> 8 & 0xFF, fraction);
+        int b = blendChannel(from & 0xFF, to & 0xFF, fraction);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int blendChannel(int from, int to, float fraction){
+        return from + Math.round((to - from) * fraction);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.customviews.core;
+
+/**
+ * Todos los segmentos de un reloj como una sola malla de triangulos, para dibujarlos con una
+ * sola llamada (por ejemplo {@code Canvas.drawVertices} en modo {@code TRIANGLES}). Cada segmento
+ * es un poligono convexo de {@link SegmentShapes}, asi que se triangula en abanico desde su primer
+ * vertice. Los vertices son inmutables y se pueden compartir; el estado de los segmentos se
+ * expresa solo con los colores de cada vertice (ver {@link #writeColors(int[], long, long, int, int)}).
+ *
+ * No depende de Android.
+ */
+public final class SegmentMesh {
+
+    /**
+     * Valor de {@code segmentsToWrite} para escribir los colores de todos los segmentos
+     */
+    public static final long ALL_SEGMENTS = -1L;
+
+    /**
+     * Pares (x, y) de los vertices, tres por triangulo
+     */
+    public final float[] vertices;
+    /**
+     * Cantidad de vertices; un arreglo de colores debe tener al menos este tamaño
+     */
+    public final int vertexCount;
+    /**
+     * Indice del primer vertice de cada segmento, y al final la cantidad total
+     */
+    private final int[] firstVertex;
+
+    /**
+     * @param grid grilla ya configurada con el formato y el tamaño del reloj
+     */
+    public SegmentMesh(ClockGrid grid) {
+        ClockFormat format = grid.getFormat();
+        int segments = format.getSegments();
+        float[] points = new float[format.coordinateCount()];
+        int[] starts = new int[segments + 1];
+        grid.fillSegments(points, starts);
+
+        firstVertex = new int[segments + 1];
+        int count = 0;
+        for(int segment = 0; segment < segments; segment++){
+            firstVertex[segment] = count;
+            int polygonVertices = (starts[segment + 1] - starts[segment]) / 2;
+            count += 3 * (polygonVertices - 2);
+        }
+        firstVertex[segments] = count;
+        vertexCount = count;
+        vertices = new float[2 * count];
+
+        int out = 0;
+        for(int segment = 0; segment < segments; segment++){
+            int first = starts[segment];
+            for(int i = first + 2; i + 2 < starts[segment + 1]; i += 2){
+                out = writeVertex(points, first, out);
+                out = writeVertex(points, i, out);
+                out = writeVertex(points, i + 2, out);
+            }
+        }
+    }
+
+    private int writeVertex(float[] points, int index, int out){
+        vertices[out] = points[index];
+        vertices[out + 1] = points[index + 1];
+        return out + 2;
+    }
+
+    public int getSegments(){
+        return firstVertex.length - 1;
+    }
+
+    /**
+     * @return indice del primer vertice del segmento
+     */
+    public int firstVertex(int segment){
+        return firstVertex[segment];
+    }
+
+    /**
+     * @return cantidad de vertices del segmento, tres por triangulo
+     */
+    public int vertexCount(int segment){
+        return firstVertex[segment + 1] - firstVertex[segment];
+    }
+
+    /**
+     * Escribe el color de los vertices de algunos segmentos segun si estan activos. Al cambiar de
+     * valor basta con escribir los segmentos que cambiaron, {@code oldMask ^ newMask}
+     * @param colors arreglo de al menos {@link #vertexCount} colores
+     * @param mask mascara de segmentos activos, como {@link ClockFormat#maskFor(long)}
+     * @param segmentsToWrite bits de los segmentos que se escriben, o {@link #ALL_SEGMENTS}
+     */
+    public void writeColors(int[] colors, long mask, long segmentsToWrite, int activeColor, int inactiveColor){
+        for(int segment = 0, segments = getSegments(); segment < segments; segment++){
+            if(!ClockFormat.isActive(segmentsToWrite, segment))
+                continue;
+            int color = ClockFormat.isActive(mask, segment) ? activeColor : inactiveColor;
+            for(int v = firstVertex[segment], end = firstVertex[segment + 1]; v < end; v++){
+                colors[v] = color;
+            }
+        }
+    }
+}
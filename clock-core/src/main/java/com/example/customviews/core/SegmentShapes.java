@@ -0,0 +1,104 @@
+package com.example.customviews.core;
+
+/**
+ * Forma de los 7 segmentos de un digito y de los separadores (dos puntos y punto decimal), como
+ * poligonos sobre la grilla. Convierte los puntos de la grilla en coordenadas, sin crear objetos,
+ * para que la misma geometria se pueda usar para crear paths, rasterizar digitos o triangular
+ * segmentos. No depende de Android.
+ */
+public final class SegmentShapes {
+
+    /**
+     * Tamaño en celdas del area que ocupan los segmentos de un digito
+     */
+    public static final int DIGIT_WIDTH = 8, DIGIT_HEIGHT = 12;
+    /**
+     * Fila de la grilla en la que empieza el segmento A
+     */
+    public static final int DIGIT_FIRST_ROW = 3;
+    /**
+     * Cantidad de columnas que ocupa cada digito, incluyendo el espacio que lo separa del siguiente
+     */
+    public static final int DIGIT_COLUMNS = 10;
+    /**
+     * Cantidad de filas de la grilla sin padding: los digitos con 3 filas libres arriba y abajo
+     */
+    public static final int ROWS = 2 * DIGIT_FIRST_ROW + DIGIT_HEIGHT;
+
+    /**
+     * Formas de los separadores, que se dibujan en el espacio entre un digito y el siguiente.
+     * Se numeran despues de los segmentos {@link SevenSegment#A}..{@link SevenSegment#G}
+     */
+    public static final int COLON_UPPER = 7, COLON_LOWER = 8, POINT = 9;
+
+    /**
+     * Puntos de la grilla (x, y) que forman cada forma, relativos a la columna 0 del digito (para
+     * los separadores, del digito que esta a su izquierda), en el orden A..G y luego separadores
+     */
+    private static final float[][] SHAPE_POINTS = {
+            {0, 3, 8, 3, 6, 5, 2, 5},                //A
+            {0, 3, 0, 9, 2, 8, 2, 5},                //B
+            {8, 3, 8, 9, 6, 8, 6, 5},                //C
+            {0, 9, 2, 8, 6, 8, 8, 9, 6, 10, 2, 10},  //D
+            {0, 9, 0, 15, 2, 13, 2, 10},             //E
+            {8, 9, 8, 15, 6, 13, 6, 10},             //F
+            {8, 15, 0, 15, 2, 13, 6, 13},            //G
+            {8.5f, 6, 9.5f, 6, 9.5f, 7, 8.5f, 7},    //COLON_UPPER
+            {8.5f, 11, 9.5f, 11, 9.5f, 12, 8.5f, 12},//COLON_LOWER
+            {8.5f, 14, 9.5f, 14, 9.5f, 15, 8.5f, 15} //POINT
+    };
+
+    /**
+     * Cantidad de vertices de todos los segmentos de un digito
+     */
+    public static final int POINTS_PER_DIGIT;
+
+    static {
+        int points = 0;
+        for(int segment = 0; segment < SevenSegment.SEGMENTS_PER_DIGIT; segment++){
+            points += SHAPE_POINTS[segment].length / 2;
+        }
+        POINTS_PER_DIGIT = points;
+    }
+
+    private SegmentShapes() {
+    }
+
+    /**
+     * @return cantidad de vertices del segmento o separador
+     */
+    public static int pointCount(int segment){
+        return SHAPE_POINTS[segment].length / 2;
+    }
+
+    /**
+     * Calcula las coordenadas de los vertices de un segmento
+     * @param out arreglo en el que se escriben los pares (x, y)
+     * @param outOffset posicion de {@code out} en la que se escribe el primer x
+     * @param segment segmento entre {@link SevenSegment#A} y {@link SevenSegment#G}, o un separador
+     * @param left coordenada x de la columna 0 del digito
+     * @param top coordenada y de la fila 0 de la grilla
+     * @param cellSize el tamaño de una celda de la grilla
+     * @return cantidad de floats escritos
+     */
+    public static int fillSegment(float[] out, int outOffset, int segment, float left, float top, float cellSize){
+        float[] points = SHAPE_POINTS[segment];
+        for(int i = 0; i < points.length; i += 2){
+            out[outOffset + i] = left + points[i] * cellSize;
+            out[outOffset + i + 1] = top + points[i + 1] * cellSize;
+        }
+        return points.length;
+    }
+
+    /**
+     * Calcula las coordenadas de los vertices de los 7 segmentos de un digito, uno detras de otro
+     * @return cantidad de floats escritos, {@code 2 * POINTS_PER_DIGIT}
+     */
+    public static int fillDigit(float[] out, int outOffset, float left, float top, float cellSize){
+        int written = 0;
+        for(int segment = 0; segment < SevenSegment.SEGMENTS_PER_DIGIT; segment++){
+            written += fillSegment(out, outOffset + written, segment, left, top, cellSize);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.customviews.core;
+
+/**
+ * Tabla inmutable de codificacion de siete segmentos.
+ * Cada digito tiene precalculada una mascara de bits (un bit por segmento, de A a G), y cada
+ * valor que puede mostrar el reloj tiene precalculada la mascara de sus 14 segmentos, en el mismo
+ * orden en el que se crean los paths: el bit {@code i} indica si el path {@code i} esta activo.
+ *
+ *      A
+ *    B   C
+ *      D
+ *    E   F
+ *      G
+ */
+public final class SevenSegment {
+
+    public static final int A = 0, B = 1, C = 2, D = 3, E = 4, F = 5, G = 6;
+
+    public static final int SEGMENTS_PER_DIGIT = 7;
+    public static final int DIGITS = 2;
+    /**
+     * Cantidad de segmentos del reloj, es decir de bits de las mascaras de valor
+     */
+    public static final int SEGMENTS = DIGITS * SEGMENTS_PER_DIGIT;
+    public static final int MIN_VALUE = 0;
+    public static final int MAX_VALUE = 24;
+
+    /**
+     * Indice de un digito apagado (un cero a la izquierda que no se muestra)
+     */
+    public static final int BLANK = 10;
+
+    /**
+     * Mascara devuelta para valores que el reloj no puede mostrar
+     */
+    public static final int INVALID_MASK = -1;
+
+    private static final int[] DIGIT_MASKS = {
+            1 << A | 1 << B | 1 << C | 1 << E | 1 << F | 1 << G,        //0
+            1 << C | 1 << F,                                            //1
+            1 << A | 1 << C | 1 << D | 1 << E | 1 << G,                 //2
+            1 << A | 1 << C | 1 << D | 1 << F | 1 << G,                 //3
+            1 << B | 1 << C | 1 << D | 1 << F,                          //4
+            1 << A | 1 << B | 1 << D | 1 << F | 1 << G,                 //5
+            1 << A | 1 << B | 1 << D | 1 << E | 1 << F | 1 << G,        //6
+            1 << A | 1 << C | 1 << F,                                   //7
+            1 << A | 1 << B | 1 << C | 1 << D | 1 << E | 1 << F | 1 << G, //8
+            1 << A | 1 << B | 1 << C | 1 << D | 1 << F,                 //9
+            0                                                           //BLANK
+    };
+
+    private static final int[] VALUE_MASKS = new int[MAX_VALUE - MIN_VALUE + 1];
+
+    static {
+        for(int value = MIN_VALUE; value <= MAX_VALUE; value++){
+            int mask = 0;
+            int number = value;
+            //el digito de las unidades va en la ultima posicion, los ceros a la izquierda no se muestran
+            int position = DIGITS - 1;
+            do{
+                mask |= DIGIT_MASKS[number % 10] << (position * SEGMENTS_PER_DIGIT);
+                number /= 10;
+                position--;
+            }while (number > 0 && position >= 0);
+            VALUE_MASKS[value - MIN_VALUE] = mask;
+        }
+    }
+
+    private SevenSegment() {
+    }
+
+    /**
+     * @param digit digito entre 0 y 9, o {@link #BLANK}
+     * @return mascara de 7 bits con los segmentos activos del digito
+     */
+    public static int digitMask(int digit){
+        return DIGIT_MASKS[digit];
+    }
+
+    /**
+     * @param value valor que se quiere mostrar
+     * @return mascara con los segmentos activos de todos los digitos, o {@link #INVALID_MASK} si
+     * el valor esta fuera de rango
+     */
+    public static int maskForValue(int value){
+        if(value < MIN_VALUE || value > MAX_VALUE)
+            return INVALID_MASK;
+        return VALUE_MASKS[value - MIN_VALUE];
+    }
+
+    /**
+     * @param value valor que se quiere mostrar, entre {@link #MIN_VALUE} y {@link #MAX_VALUE}
+     * @param position posicion del digito, empezando de la izquierda
+     * @return digito que se muestra en la posicion, o {@link #BLANK} si es un cero a la izquierda
+     */
+    public static int digitAt(int value, int position){
+        int number = value;
+        for(int i = position; i < DIGITS - 1; i++){
+            number /= 10;
+        }
+        if(number == 0 && position < DIGITS - 1)
+            return BLANK;
+        return number % 10;
+    }
+
+    /**
+     * @param mask mascara de segmentos
+     * @param segmentIndex indice del path dentro de la lista de paths
+     * @return true si el segmento esta activo
+     */
+    public static boolean isActive(int mask, int segmentIndex){
+        return (mask & (1 << segmentIndex)) != 0;
+    }
+
+    /**
+     * @param oldMask mascara de segmentos que se estaba mostrando
+     * @param newMask mascara de segmentos que se va a mostrar
+     * @param position posicion del digito, empezando de la izquierda
+     * @return true si cambia algun segmento del digito
+     */
+    public static boolean digitChanged(int oldMask, int newMask, int position){
+        int digitMask = (1 << SEGMENTS_PER_DIGIT) - 1;
+        return ((oldMask ^ newMask) >>> (position * SEGMENTS_PER_DIGIT) & digitMask) != 0;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.customviews.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Indice de una hoja de sprites con los digitos del reloj (0..9 y el digito apagado), generada en
+ * el build. Los glifos estan en una grilla de {@link #columns} columnas, todos del mismo tamaño,
+ * asi que el indice solo guarda el tamaño de celda con el que se dibujaron, las dimensiones de un
+ * glifo y los colores; la posicion de cada glifo se calcula.
+ *
+ * Formato binario, en big endian (ver {@link #write(DataOutput)}):
+ * <pre>
+ *   magic 'CKSP' (4), version (2), cellSize (float, 4), glyphWidth (2), glyphHeight (2),
+ *   margin (1), columns (1), glyphs (1), activeColor (4), inactiveColor (4)
+ * </pre>
+ */
+public final class SpriteSheetIndex {
+
+    static final int MAGIC = 0x434B5350;
+    static final int VERSION = 1;
+
+    /**
+     * Cantidad de glifos: los digitos del 0 al 9 y {@link SevenSegment#BLANK}
+     */
+    public static final int GLYPHS = SevenSegment.BLANK + 1;
+    /**
+     * Pixeles libres alrededor de cada glifo para que no se corte el anti-aliasing
+     */
+    public static final int GLYPH_MARGIN = 1;
+    private static final int COLUMNS = 4;
+
+    /**
+     * Tamaño en pixeles de una celda de la grilla con el que se dibujaron los glifos
+     */
+    public final float cellSize;
+    public final int glyphWidth;
+    public final int glyphHeight;
+    public final int margin;
+    public final int columns;
+    public final int glyphs;
+    public final int activeColor;
+    public final int inactiveColor;
+
+    private SpriteSheetIndex(float cellSize, int glyphWidth, int glyphHeight, int margin, int columns,
+                             int glyphs, int activeColor, int inactiveColor) {
+        this.cellSize = cellSize;
+        this.glyphWidth = glyphWidth;
+        this.glyphHeight = glyphHeight;
+        this.margin = margin;
+        this.columns = columns;
+        this.glyphs = glyphs;
+        this.activeColor = activeColor;
+        this.inactiveColor = inactiveColor;
+    }
+
+    /**
+     * @param cellSize tamaño en pixeles de una celda de la grilla
+     * @param activeColor color ARGB de los segmentos activos
+     * @param inactiveColor color ARGB de los segmentos inactivos
+     */
+    public static SpriteSheetIndex forCellSize(float cellSize, int activeColor, int inactiveColor){
+        return new SpriteSheetIndex(cellSize,
+                (int) Math.ceil(SegmentShapes.DIGIT_WIDTH * cellSize) + 2 * GLYPH_MARGIN,
+                (int) Math.ceil(SegmentShapes.DIGIT_HEIGHT * cellSize) + 2 * GLYPH_MARGIN,
+                GLYPH_MARGIN,
+                COLUMNS,
+                GLYPHS,
+                activeColor,
+                inactiveColor);
+    }
+
+    public int rows(){
+        return (glyphs + columns - 1) / columns;
+    }
+
+    /**
+     * @return ancho de la hoja en pixeles
+     */
+    public int sheetWidth(){
+        return glyphWidth * columns;
+    }
+
+    /**
+     * @return alto de la hoja en pixeles
+     */
+    public int sheetHeight(){
+        return glyphHeight * rows();
+    }
+
+    /**
+     * @param glyph digito entre 0 y 9, o {@link SevenSegment#BLANK}
+     * @return coordenada x del borde izquierdo del glifo en la hoja, incluyendo el margen
+     */
+    public int glyphLeft(int glyph){
+        return (glyph % columns) * glyphWidth;
+    }
+
+    /**
+     * @return coordenada y del borde superior del glifo en la hoja, incluyendo el margen
+     */
+    public int glyphTop(int glyph){
+        return (glyph / columns) * glyphHeight;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeFloat(cellSize);
+        out.writeShort(glyphWidth);
+        out.writeShort(glyphHeight);
+        out.writeByte(margin);
+        out.writeByte(columns);
+        out.writeByte(glyphs);
+        out.writeInt(activeColor);
+        out.writeInt(inactiveColor);
+    }
+
+    /**
+     * @throws IOException si no es un indice de hoja de sprites, o es de otra version
+     */
+    public static SpriteSheetIndex read(DataInput in) throws IOException {
+        if(in.readInt() != MAGIC)
+            throw new IOException("Not a sprite sheet index");
+        int version = in.readUnsignedShort();
+        if(version != VERSION)
+            throw new IOException("Unsupported sprite sheet index version " + version);
+        float cellSize = in.readFloat();
+        int glyphWidth = in.readUnsignedShort();
+        int glyphHeight = in.readUnsignedShort();
+        int margin = in.readUnsignedByte();
+        int columns = in.readUnsignedByte();
+        int glyphs = in.readUnsignedByte();
+        int activeColor = in.readInt();
+        int inactiveColor = in.readInt();
+        if(columns == 0 || glyphs < GLYPHS)
+            throw new IOException("Invalid sprite sheet index");
+        return new SpriteSheetIndex(cellSize, glyphWidth, glyphHeight, margin, columns, glyphs,
+                activeColor, inactiveColor);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ClockCommandDecoderTest {
+
+    private final List<long[]> commands = new ArrayList<>();
+    private final ClockCommandDecoder decoder = new ClockCommandDecoder(new ClockCommandDecoder.Sink() {
+        @Override
+        public void onCommand(int opcode, int clockId, long value) {
+            commands.add(new long[]{opcode, clockId, value});
+        }
+    });
+
+    @Test
+    public void feed_decodesFramesSplitAcrossReads() throws Exception {
+        byte[] stream = new byte[3 * ClockCommand.MAX_FRAME_LENGTH];
+        int length = ClockCommand.encode(stream, 0, ClockCommand.START, 3, 0);
+        length += ClockCommand.encode(stream, length, ClockCommand.SET_VALUE, 0xFFFF, 12345);
+        length += ClockCommand.encode(stream, length, ClockCommand.STOP, 300, 0);
+
+        //un byte por lectura parte todos los frames
+        for(int i = 0; i < length; i++){
+            decoder.feed(stream, i, 1);
+        }
+
+        assertEquals(3, commands.size());
+        assertCommand(ClockCommand.START, 3, 0, commands.get(0));
+        assertCommand(ClockCommand.SET_VALUE, 0xFFFF, 12345, commands.get(1));
+        assertCommand(ClockCommand.STOP, 300, 0, commands.get(2));
+    }
+
+    @Test
+    public void feed_rejectsUnknownOpcode() throws Exception {
+        byte[] stream = new byte[ClockCommand.MAX_FRAME_LENGTH + 1];
+        int length = ClockCommand.encode(stream, 0, ClockCommand.RESET, 1, 0);
+        stream[length++] = 42;
+        try {
+            decoder.feed(stream, 0, length);
+            fail("expected ProtocolException");
+        } catch (ClockCommandDecoder.ProtocolException expected) {
+            //los frames anteriores al error se entregan igual
+            assertEquals(1, commands.size());
+        }
+    }
+
+    private static void assertCommand(int opcode, int clockId, long value, long[] command) {
+        assertEquals(opcode, command[0]);
+        assertEquals(clockId, command[1]);
+        assertEquals(value, command[2]);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClockCommandFeedTest {
+
+    private static final int CLOCKS = 32;
+    private static final int COMMANDS = 20000;
+
+    @Test
+    public void feed_readsLoopbackSocketAndCoalesces() throws Exception {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final CommandCoalescer coalescer = new CommandCoalescer(CLOCKS);
+        final CountDownLatch pending = new CountDownLatch(1);
+        ClockCommandFeed feed = new ClockCommandFeed(
+                ClockCommandFeed.tcp(server.getInetAddress().getHostAddress(), server.getLocalPort()),
+                coalescer,
+                new ClockCommandFeed.Listener() {
+                    @Override
+                    public void onCommandsPending() {
+                        pending.countDown();
+                    }
+                });
+        feed.start();
+        try {
+            Socket console = server.accept();
+            byte[] stream = new byte[COMMANDS * ClockCommand.MAX_FRAME_LENGTH];
+            int length = 0;
+            for(int i = 0; i < COMMANDS; i++){
+                //el ultimo comando de cada reloj es un SET_VALUE con su id
+                int clockId = i % CLOCKS;
+                length += i < COMMANDS - CLOCKS
+                        ? ClockCommand.encode(stream, length, ClockCommand.START, clockId, 0)
+                        : ClockCommand.encode(stream, length, ClockCommand.SET_VALUE, clockId, clockId * 100);
+            }
+            OutputStream output = console.getOutputStream();
+            output.write(stream, 0, length);
+            output.flush();
+
+            assertTrue(pending.await(5, TimeUnit.SECONDS));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.getReceivedCount() < COMMANDS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(COMMANDS, coalescer.getReceivedCount());
+
+            CommandCoalescerTest.RecordingTarget target = new CommandCoalescerTest.RecordingTarget(CLOCKS);
+            assertEquals(CLOCKS, coalescer.drain(target));
+            assertEquals(2 * CLOCKS, target.calls.size());
+            assertEquals("duration 5 500", target.calls.get(10));
+            assertEquals("start 5", target.calls.get(11));
+            console.close();
+        } finally {
+            feed.stop();
+            server.close();
+        }
+    }
+
+    @Test
+    public void restart_whileOpening_leavesTheOldReaderOut() throws Exception {
+        final CountDownLatch firstOpening = new CountDownLatch(1);
+        final CountDownLatch firstReleased = new CountDownLatch(1);
+        final ClosingStream first = new ClosingStream(ClockCommand.START, 1, 0);
+        final ClosingStream second = new ClosingStream(ClockCommand.SET_VALUE, 2, 200);
+        final CommandCoalescer coalescer = new CommandCoalescer(CLOCKS);
+        ClockCommandFeed feed = new ClockCommandFeed(new ClockCommandFeed.Source() {
+            private int opens;
+
+            @Override
+            public InputStream open() throws IOException {
+                synchronized (this) {
+                    opens++;
+                    if(opens == 2)
+                        return second;
+                    if(opens > 2)
+                        throw new InterruptedIOException();
+                }
+                //la primera conexion no se puede interrumpir, como un connect() bloqueado
+                firstOpening.countDown();
+                while (true) {
+                    try {
+                        firstReleased.await();
+                        return first;
+                    } catch (InterruptedException e) {
+                        //se sigue esperando
+                    }
+                }
+            }
+        }, coalescer, new ClockCommandFeed.Listener() {
+            @Override
+            public void onCommandsPending() {
+            }
+        });
+        feed.start();
+        try {
+            assertTrue(firstOpening.await(5, TimeUnit.SECONDS));
+            feed.stop();
+            feed.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.getReceivedCount() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            //la lectura vieja se desbloquea despues de la nueva, y cierra su conexion sin leerla
+            firstReleased.countDown();
+            while (!first.closed && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(first.closed);
+            assertEquals(first.length, first.available());
+            assertTrue(feed.isRunning());
+
+            CommandCoalescerTest.RecordingTarget target = new CommandCoalescerTest.RecordingTarget(CLOCKS);
+            assertEquals(1, coalescer.drain(target));
+            assertEquals("duration 2 200", target.toString());
+        } finally {
+            feed.stop();
+        }
+        assertFalse(feed.isRunning());
+    }
+
+    /**
+     * Stream con un solo comando, que recuerda si se cerro
+     */
+    private static final class ClosingStream extends ByteArrayInputStream {
+        final int length;
+        volatile boolean closed;
+
+        ClosingStream(int opcode, int clockId, long value) {
+            super(new byte[ClockCommand.MAX_FRAME_LENGTH]);
+            length = ClockCommand.encode(buf, 0, opcode, clockId, value);
+            count = length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClockFormatTest {
+
+    @Test
+    public void seconds_matchesTheTwoDigitTable() {
+        ClockFormat format = ClockFormat.SECONDS;
+        for (int value = SevenSegment.MIN_VALUE; value <= SevenSegment.MAX_VALUE; value++) {
+            assertEquals(SevenSegment.maskForValue(value), format.maskFor(value));
+        }
+        assertEquals(99, format.getMaxUnits());
+    }
+
+    @Test
+    public void minutesSecondsTenths_showsAGameClock() {
+        ClockFormat format = ClockFormat.MINUTES_SECONDS_TENTHS;
+        long units = format.unitsFor(12 * 60 * Countdown.SECOND);
+
+        assertEquals(5, format.getDigits());
+        assertEquals(5 * SevenSegment.SEGMENTS_PER_DIGIT + 3, format.getSegments());
+        assertEquals(1, format.digitAt(units, 0));
+        assertEquals(2, format.digitAt(units, 1));
+        assertEquals(0, format.digitAt(units, 2));
+        assertEquals(0, format.digitAt(units, 3));
+        assertEquals(0, format.digitAt(units, 4));
+    }
+
+    @Test
+    public void unitsFor_roundsUpToTheResolution() {
+        assertEquals(1, ClockFormat.SECONDS_TENTHS.unitsFor(1));
+        assertEquals(453, ClockFormat.SECONDS_TENTHS.unitsFor(45201));
+        assertEquals(0, ClockFormat.SECONDS_TENTHS.unitsFor(0));
+        assertEquals(ClockFormat.SECONDS.getMaxUnits(), ClockFormat.SECONDS.unitsFor(1000 * Countdown.SECOND));
+    }
+
+    @Test
+    public void leadingZeros_areBlankOnlyInTheFirstField() {
+        ClockFormat format = ClockFormat.MINUTES_SECONDS;
+        long units = format.unitsFor(5 * Countdown.SECOND);
+
+        assertEquals(SevenSegment.BLANK, format.digitAt(units, 0));
+        assertEquals(0, format.digitAt(units, 1));
+        assertEquals(0, format.digitAt(units, 2));
+        assertEquals(5, format.digitAt(units, 3));
+    }
+
+    @Test
+    public void separators_areAlwaysActive() {
+        ClockFormat format = ClockFormat.MINUTES_SECONDS;
+        long mask = format.maskFor(0);
+        int colon = format.digitFirstSegment(2) - 2;
+        assertTrue(format.isSeparator(colon));
+        assertTrue(ClockFormat.isActive(mask, colon));
+        assertTrue(ClockFormat.isActive(mask, colon + 1));
+        assertFalse(format.digitChanged(mask, format.maskFor(1), 0));
+        assertTrue(format.digitChanged(mask, format.maskFor(1), 3));
+    }
+
+    @Test
+    public void of_reusesTheFormatOfAPattern() {
+        assertSame(ClockFormat.MINUTES_SECONDS, ClockFormat.of("mm:ss"));
+        assertEquals(999, ClockFormat.of("sss").getMaxUnits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_rejectsSeparatorsAtTheEnd() {
+        ClockFormat.of("ss:");
+    }
+
+    @Test
+    public void grid_placesSeparatorsInTheGapBetweenDigits() {
+        ClockGrid grid = new ClockGrid();
+        grid.set(ClockFormat.MINUTES_SECONDS, 1, 0, 0, 0);
+        float[] points = new float[ClockFormat.MINUTES_SECONDS.coordinateCount()];
+        int[] starts = new int[ClockFormat.MINUTES_SECONDS.getSegments() + 1];
+        grid.fillSegments(points, starts);
+
+        assertEquals(38, grid.getColumns());
+        int colon = ClockFormat.MINUTES_SECONDS.digitFirstSegment(2) - 2;
+        assertEquals(18.5f, points[starts[colon]], 0);
+        assertEquals(20, points[starts[ClockFormat.MINUTES_SECONDS.digitFirstSegment(2)]], 0);
+    }
+}
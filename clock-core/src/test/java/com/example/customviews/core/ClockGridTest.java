@@ -0,0 +1,39 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClockGridTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void setup_centersTheGridInsideThePadding() {
+        ClockGrid grid = new ClockGrid();
+        grid.setup(300, 200, 10, 20, 30, 40, 1);
+
+        assertEquals(140, grid.getCanvasSize(), DELTA);
+        assertEquals(20, grid.getColumns());
+        assertEquals(7, grid.getCellSize(), DELTA);
+        assertEquals(10 + (260 - 140) / 2f, grid.getHorizontalOffset(), DELTA);
+        assertEquals(20, grid.getVerticalOffset(), DELTA);
+    }
+
+    @Test
+    public void fillSegments_writesEverySegmentInMaskOrder() {
+        ClockGrid grid = new ClockGrid();
+        grid.set(180, 0, 5, 7);
+        float[] points = new float[ClockGrid.SEGMENT_COORDINATES];
+        int[] starts = new int[SevenSegment.SEGMENTS + 1];
+        grid.fillSegments(points, starts);
+
+        assertEquals(ClockGrid.SEGMENT_COORDINATES, starts[SevenSegment.SEGMENTS]);
+        //el segmento A del segundo digito empieza en la columna 10, fila 3
+        int secondA = starts[SevenSegment.SEGMENTS_PER_DIGIT + SevenSegment.A];
+        assertEquals(5 + 10 * 10, points[secondA], DELTA);
+        assertEquals(7 + 3 * 10, points[secondA + 1], DELTA);
+        assertEquals(grid.digitLeft(1), points[secondA], DELTA);
+        assertEquals(grid.digitTop(), points[secondA + 1], DELTA);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandCoalescerTest {
+
+    @Test
+    public void drain_appliesOneCombinedChangePerClock() {
+        CommandCoalescer coalescer = new CommandCoalescer(4);
+        assertTrue(coalescer.post(ClockCommand.START, 1, 0));
+        assertFalse(coalescer.post(ClockCommand.SET_VALUE, 1, 5000));
+        coalescer.post(ClockCommand.STOP, 1, 0);
+        coalescer.post(ClockCommand.SET_VALUE, 1, 7000);
+        coalescer.post(ClockCommand.RESET, 2, 0);
+        coalescer.post(ClockCommand.START, 9, 0);
+
+        RecordingTarget target = new RecordingTarget(4);
+        assertEquals(2, coalescer.drain(target));
+        //primero el valor y despues el estado de marcha, solo lo ultimo de cada uno
+        assertEquals("duration 1 7000, stop 1, reset 2", target.toString());
+        assertEquals(6, coalescer.getReceivedCount());
+        assertEquals(1, coalescer.getRejectedCount());
+
+        //vacio, el siguiente comando vuelve a pedir un drain
+        assertEquals(0, coalescer.drain(target));
+        assertTrue(coalescer.post(ClockCommand.START, 0, 0));
+    }
+
+    static final class RecordingTarget implements ClockCommand.Target {
+        private final int clockCount;
+        final List<String> calls = new ArrayList<>();
+
+        RecordingTarget(int clockCount) {
+            this.clockCount = clockCount;
+        }
+
+        @Override
+        public int getClockCount() {
+            return clockCount;
+        }
+
+        @Override
+        public void start(int clockId) {
+            calls.add("start " + clockId);
+        }
+
+        @Override
+        public void stop(int clockId) {
+            calls.add("stop " + clockId);
+        }
+
+        @Override
+        public void reset(int clockId) {
+            calls.add("reset " + clockId);
+        }
+
+        @Override
+        public void setDurationMillis(int clockId, long durationMillis) {
+            calls.add("duration " + clockId + " " + durationMillis);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for(String call : calls){
+                if(builder.length() > 0)
+                    builder.append(", ");
+                builder.append(call);
+            }
+            return builder.toString();
+        }
+    }
+}
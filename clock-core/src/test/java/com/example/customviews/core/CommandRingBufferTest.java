@@ -0,0 +1,68 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandRingBufferTest {
+
+    @Test
+    public void pack_roundTrips() {
+        long packed = ClockCommand.pack(ClockCommand.SET_VALUE, ClockCommand.MAX_CLOCK_ID, Integer.MAX_VALUE);
+        assertEquals(ClockCommand.SET_VALUE, ClockCommand.opcodeOf(packed));
+        assertEquals(ClockCommand.MAX_CLOCK_ID, ClockCommand.clockIdOf(packed));
+        assertEquals(Integer.MAX_VALUE, ClockCommand.valueOf(packed));
+    }
+
+    @Test
+    public void offer_rejectsWhenFull_andDrainKeepsOrder() {
+        CommandRingBuffer ring = new CommandRingBuffer(3);
+        assertEquals(4, ring.capacity());
+        for(int i = 0; i < 4; i++){
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+
+        final long[] next = {0};
+        assertEquals(4, ring.drain(new CommandRingBuffer.Consumer() {
+            @Override
+            public void accept(long command) {
+                assertEquals(next[0]++, command);
+            }
+        }));
+        assertTrue(ring.isEmpty());
+        assertTrue(ring.offer(4));
+    }
+
+    @Test
+    public void producerAndConsumerThreads_seeEveryCommandOnce() throws InterruptedException {
+        final CommandRingBuffer ring = new CommandRingBuffer(64);
+        final int commands = 200000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(long i = 0; i < commands; i++){
+                    while (!ring.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        final long[] expected = {0};
+        CommandRingBuffer.Consumer consumer = new CommandRingBuffer.Consumer() {
+            @Override
+            public void accept(long command) {
+                assertEquals(expected[0]++, command);
+            }
+        };
+        while (expected[0] < commands) {
+            ring.drain(consumer);
+        }
+        producer.join();
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CountdownTableTest {
+
+    @Test
+    public void eachClock_behavesLikeACountdown() {
+        CountdownTable table = new CountdownTable(3, 5 * Countdown.SECOND);
+        Countdown reference = new Countdown(5 * Countdown.SECOND);
+        table.start(1, 1000);
+        reference.start(1000);
+
+        assertFalse(table.isRunning(0));
+        assertTrue(table.isAnyRunning());
+        for(long now = 1000; now <= 7000; now += 250){
+            assertEquals(reference.remainingMillis(now), table.remainingMillis(1, now));
+            assertEquals(reference.hasExpired(now), table.hasExpired(1, now));
+            if(!reference.hasExpired(now))
+                assertEquals(reference.nextChangeTime(now, 100), table.nextChangeTime(1, now, 100));
+        }
+
+        table.start(0, 2000);
+        assertEquals(6000, table.earliestDeadline());
+        table.stop(0, 2000);
+
+        table.stop(1, 2500);
+        assertEquals(3500, table.remainingMillis(1, 9000));
+        assertEquals(5000, table.remainingMillis(0, 9000));
+
+        assertEquals(Long.MAX_VALUE, table.earliestDeadline());
+        table.finish(2);
+        assertEquals(0, table.remainingMillis(2, 0));
+        table.setDuration(2, 2000, 0);
+        assertEquals(2000, table.remainingMillis(2, 0));
+    }
+
+    @Test
+    public void randomOperations_matchCountdown() {
+        final int size = 4;
+        CountdownTable table = new CountdownTable(size, 3 * Countdown.SECOND);
+        Countdown[] reference = new Countdown[size];
+        for(int i = 0; i < size; i++){
+            reference[i] = new Countdown(3 * Countdown.SECOND);
+        }
+
+        Random random = new Random(42);
+        long now = 0;
+        for(int step = 0; step < 10000; step++){
+            now += random.nextInt(400);
+            int i = random.nextInt(size);
+            switch (random.nextInt(6)){
+                case 0:
+                    table.start(i, now);
+                    reference[i].start(now);
+                    break;
+                case 1:
+                    table.stop(i, now);
+                    reference[i].stop(now);
+                    break;
+                case 2:
+                    table.reset(i, now);
+                    reference[i].reset(now);
+                    break;
+                case 3:
+                    long duration = random.nextInt(5000);
+                    table.setDuration(i, duration, now);
+                    reference[i].setDuration(duration, now);
+                    break;
+                default:
+                    //tick
+                    if(reference[i].hasExpired(now)) {
+                        assertTrue(table.hasExpired(i, now));
+                        table.finish(i);
+                        reference[i].finish();
+                    }
+                    break;
+            }
+            String at = "step " + step + ", clock " + i;
+            assertEquals(at, reference[i].isRunning(), table.isRunning(i));
+            assertEquals(at, reference[i].remainingMillis(now), table.remainingMillis(i, now));
+            assertEquals(at, reference[i].hasExpired(now), table.hasExpired(i, now));
+            assertEquals(at, reference[i].nextChangeTime(now, 100), table.nextChangeTime(i, now, 100));
+            if(reference[i].isRunning())
+                assertEquals(at, reference[i].getDeadline(), table.getDeadline(i));
+        }
+    }
+}
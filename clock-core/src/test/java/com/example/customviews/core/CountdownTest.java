@@ -0,0 +1,19 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CountdownTest {
+
+    @Test
+    public void nextChangeTime_followsTheResolution() {
+        Countdown countdown = new Countdown(5 * Countdown.SECOND);
+        countdown.start(1000);
+
+        assertEquals(2000, countdown.nextChangeTime(1000));
+        assertEquals(1100, countdown.nextChangeTime(1000, 100));
+        //un tick atrasado apunta al siguiente limite, sin repetir los que se perdieron
+        assertEquals(1400, countdown.nextChangeTime(1350, 100));
+    }
+}
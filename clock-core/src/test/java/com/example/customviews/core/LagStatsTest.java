@@ -0,0 +1,21 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LagStatsTest {
+
+    @Test
+    public void record_keepsCountMaxAndMean() {
+        LagStats stats = new LagStats();
+        stats.record(4);
+        stats.record(10);
+        stats.record(-3);
+
+        assertEquals(3, stats.getCount());
+        assertEquals(10, stats.getMaxMillis());
+        assertEquals(0, stats.getLastMillis());
+        assertEquals(14 / 3.0, stats.getMeanMillis(), 1e-9);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketIndex_isMonotonicAndCoversItsValues() {
+        int previous = 0;
+        for(long value = 0; value < 1 << 20; value++){
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index == previous || index == previous + 1);
+            assertTrue(value <= LatencyHistogram.highestValueInBucket(index));
+            previous = index;
+        }
+    }
+
+    @Test
+    public void snapshot_keepsCountMinMaxAndPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(1000000);
+        for(int i = 1; i <= 100; i++){
+            histogram.record(i * 1000);
+        }
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(101, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(5050000 / 101.0, snapshot.getMean(), 1e-9);
+        //el error de cada bucket es menor al 7%
+        assertEquals(50000, snapshot.getValueAtPercentile(50), 50000 * 0.07);
+        assertEquals(99000, snapshot.getValueAtPercentile(99), 99000 * 0.07);
+        assertEquals(100000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void record_aboveHighestTrackableValue_keepsExactMax() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        histogram.record(5000);
+
+        assertEquals(5000, histogram.snapshot().getMax());
+        assertEquals(5000, histogram.snapshot().getValueAtPercentile(100));
+    }
+
+    @Test
+    public void snapshotAndReset_emptiesHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        histogram.record(10);
+        histogram.record(20);
+
+        assertEquals(2, histogram.snapshotAndReset().getCount());
+        LatencyHistogram.Snapshot empty = histogram.snapshot();
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getMin());
+        assertEquals(0, empty.getMax());
+        assertEquals(0, empty.getValueAtPercentile(99));
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void record_fromSeveralThreads_countsEveryValue() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram(1000000);
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++){
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 10000; i++){
+                        histogram.record(i + offset);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(40000, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(10002, snapshot.getMax());
+    }
+
+    @Test
+    public void clockMetrics_recordsInvalidationsPerSecond() {
+        ClockMetrics metrics = new ClockMetrics();
+        for(long now = 0; now < 3000; now += 100){
+            metrics.recordInvalidation(now);
+        }
+        //el tercer segundo sigue en curso
+        LatencyHistogram.Snapshot perSecond = metrics.snapshot().invalidationsPerSecond;
+        assertEquals(2, perSecond.getCount());
+        assertEquals(10, perSecond.getMax());
+
+        //un segundo sin invalidaciones no se registra
+        metrics.recordInvalidation(10000);
+        perSecond = metrics.snapshotAndReset().invalidationsPerSecond;
+        assertEquals(3, perSecond.getCount());
+        assertEquals(10, perSecond.getMin());
+        assertEquals(0, metrics.snapshot().invalidationsPerSecond.getCount());
+    }
+}
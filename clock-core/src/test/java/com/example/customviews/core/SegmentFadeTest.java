@@ -0,0 +1,69 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentFadeTest {
+
+    private static final float DELTA = 1e-6f;
+
+    @Test
+    public void withoutDuration_segmentsJump() {
+        SegmentFade fade = new SegmentFade(0);
+        assertFalse(fade.animateTo(0b01L, 0));
+        assertFalse(fade.isRunning());
+        assertEquals(1f, fade.level(0), DELTA);
+        assertEquals(0f, fade.level(1), DELTA);
+    }
+
+    @Test
+    public void animateTo_interpolatesOnlyTheChangedSegments() {
+        SegmentFade fade = new SegmentFade(100);
+        fade.jumpTo(0b011L);
+        assertTrue(fade.animateTo(0b110L, 1000));
+        assertEquals(0b101L, fade.getChangingMask());
+
+        assertTrue(fade.update(1025));
+        assertEquals(0.75f, fade.level(0), DELTA);
+        assertEquals(1f, fade.level(1), DELTA);
+        assertEquals(0.25f, fade.level(2), DELTA);
+
+        assertFalse(fade.update(1100));
+        assertEquals(0L, fade.getChangingMask());
+        assertEquals(0f, fade.level(0), DELTA);
+        assertEquals(1f, fade.level(2), DELTA);
+    }
+
+    @Test
+    public void animateTo_midFade_continuesFromTheCurrentLevel() {
+        SegmentFade fade = new SegmentFade(100);
+        fade.jumpTo(0L);
+        fade.animateTo(0b1L, 0);
+
+        //a mitad de camino vuelve a apagarse: parte de 0.5, no de 1
+        fade.animateTo(0L, 50);
+        assertEquals(0.5f, fade.level(0), DELTA);
+        fade.update(100);
+        assertEquals(0.25f, fade.level(0), DELTA);
+        assertFalse(fade.update(150));
+        assertEquals(0f, fade.level(0), DELTA);
+    }
+
+    @Test
+    public void animateTo_sameMask_doesNotStartAFade() {
+        SegmentFade fade = new SegmentFade(100);
+        fade.jumpTo(0b1L);
+        assertFalse(fade.animateTo(0b1L, 0));
+        assertFalse(fade.isRunning());
+    }
+
+    @Test
+    public void blend_interpolatesEveryChannel() {
+        assertEquals(0x88999999, SegmentFade.blend(0x88999999, 0xFFFF3333, 0f));
+        assertEquals(0xFFFF3333, SegmentFade.blend(0x88999999, 0xFFFF3333, 1f));
+        assertEquals(0x80804020, SegmentFade.blend(0x00000000, 0xFFFF8040, 0.5f));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class SegmentMeshTest {
+
+    private static SegmentMesh meshFor(ClockFormat format){
+        ClockGrid grid = new ClockGrid();
+        grid.set(format, 10f, 1, 5f, 7f);
+        return new SegmentMesh(grid);
+    }
+
+    @Test
+    public void triangles_coverEverySegmentPolygon() {
+        ClockGrid grid = new ClockGrid();
+        grid.set(ClockFormat.MINUTES_SECONDS, 10f, 1, 5f, 7f);
+        SegmentMesh mesh = new SegmentMesh(grid);
+        float[] points = new float[ClockFormat.MINUTES_SECONDS.coordinateCount()];
+        int[] starts = new int[ClockFormat.MINUTES_SECONDS.getSegments() + 1];
+        grid.fillSegments(points, starts);
+
+        assertEquals(ClockFormat.MINUTES_SECONDS.getSegments(), mesh.getSegments());
+        for(int segment = 0; segment < mesh.getSegments(); segment++){
+            int polygonVertices = (starts[segment + 1] - starts[segment]) / 2;
+            assertEquals(3 * (polygonVertices - 2), mesh.vertexCount(segment));
+
+            float triangles = 0;
+            for(int v = mesh.firstVertex(segment); v < mesh.firstVertex(segment) + mesh.vertexCount(segment); v += 3){
+                triangles += Math.abs(area(mesh.vertices, 2 * v, 2 * v + 6));
+            }
+            assertEquals(Math.abs(area(points, starts[segment], starts[segment + 1])), triangles, 1e-2f);
+        }
+    }
+
+    @Test
+    public void seconds_hasSixteenTrianglesPerDigit() {
+        SegmentMesh mesh = meshFor(ClockFormat.SECONDS);
+        assertEquals(2 * 16 * 3, mesh.vertexCount);
+        assertEquals(2 * mesh.vertexCount, mesh.vertices.length);
+    }
+
+    @Test
+    public void writeColors_onlyRewritesTheRequestedSegments() {
+        SegmentMesh mesh = meshFor(ClockFormat.SECONDS);
+        int[] colors = new int[mesh.vertexCount];
+        long eight = ClockFormat.SECONDS.maskFor(8);
+        long one = ClockFormat.SECONDS.maskFor(1);
+        mesh.writeColors(colors, eight, SegmentMesh.ALL_SEGMENTS, 1, 2);
+
+        //el digito de las decenas es 0 en ambos valores: sus vertices no se tocan
+        Arrays.fill(colors, 3);
+        mesh.writeColors(colors, one, eight ^ one, 1, 2);
+        for(int segment = 0; segment < mesh.getSegments(); segment++){
+            int expected;
+            if(!ClockFormat.isActive(eight ^ one, segment))
+                expected = 3;
+            else
+                expected = ClockFormat.isActive(one, segment) ? 1 : 2;
+            assertEquals("segment " + segment, expected, colors[mesh.firstVertex(segment)]);
+        }
+    }
+
+    /**
+     * Area con signo del poligono (shoelace)
+     */
+    private static float area(float[] points, int start, int end){
+        float sum = 0;
+        for(int i = start; i < end; i += 2){
+            int next = i + 2 < end ? i + 2 : start;
+            sum += points[i] * points[next + 1] - points[next] * points[i + 1];
+        }
+        return sum / 2;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SevenSegmentTest {
+
+    @Test
+    public void maskForValue_placesUnitsInTheLastDigit() {
+        int mask = SevenSegment.maskForValue(24);
+        assertEquals(SevenSegment.digitMask(2), mask & 0x7F);
+        assertEquals(SevenSegment.digitMask(4), mask >>> SevenSegment.SEGMENTS_PER_DIGIT);
+    }
+
+    @Test
+    public void maskForValue_hidesLeadingZero() {
+        assertEquals(SevenSegment.digitMask(7) << SevenSegment.SEGMENTS_PER_DIGIT,
+                SevenSegment.maskForValue(7));
+        assertEquals(SevenSegment.BLANK, SevenSegment.digitAt(7, 0));
+        assertEquals(7, SevenSegment.digitAt(7, 1));
+    }
+
+    @Test
+    public void maskForValue_rejectsValuesOutOfRange() {
+        assertEquals(SevenSegment.INVALID_MASK, SevenSegment.maskForValue(SevenSegment.MIN_VALUE - 1));
+        assertEquals(SevenSegment.INVALID_MASK, SevenSegment.maskForValue(SevenSegment.MAX_VALUE + 1));
+    }
+
+    @Test
+    public void digitChanged_onlyReportsDigitsWithDifferentSegments() {
+        int mask20 = SevenSegment.maskForValue(20);
+        int mask21 = SevenSegment.maskForValue(21);
+        assertFalse(SevenSegment.digitChanged(mask20, mask21, 0));
+        assertTrue(SevenSegment.digitChanged(mask20, mask21, 1));
+    }
+}
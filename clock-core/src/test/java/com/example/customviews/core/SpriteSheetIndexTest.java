@@ -0,0 +1,53 @@
+package com.example.customviews.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpriteSheetIndexTest {
+
+    @Test
+    public void writeAndRead_roundTrips() throws IOException {
+        SpriteSheetIndex index = SpriteSheetIndex.forCellSize(18f, 0xFFFF3333, 0x88999999);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+
+        SpriteSheetIndex read = SpriteSheetIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(index.cellSize, read.cellSize, 0f);
+        assertEquals(index.glyphWidth, read.glyphWidth);
+        assertEquals(index.glyphHeight, read.glyphHeight);
+        assertEquals(index.margin, read.margin);
+        assertEquals(index.columns, read.columns);
+        assertEquals(SpriteSheetIndex.GLYPHS, read.glyphs);
+        assertEquals(0xFFFF3333, read.activeColor);
+        assertEquals(0x88999999, read.inactiveColor);
+    }
+
+    @Test
+    public void glyphs_fitInsideTheSheet_withoutOverlapping() {
+        SpriteSheetIndex index = SpriteSheetIndex.forCellSize(13.5f, 0, 0);
+        assertTrue(index.glyphWidth >= SegmentShapes.DIGIT_WIDTH * index.cellSize + 2 * index.margin);
+        assertTrue(index.glyphHeight >= SegmentShapes.DIGIT_HEIGHT * index.cellSize + 2 * index.margin);
+        for(int glyph = 0; glyph < index.glyphs; glyph++){
+            assertTrue(index.glyphLeft(glyph) + index.glyphWidth <= index.sheetWidth());
+            assertTrue(index.glyphTop(glyph) + index.glyphHeight <= index.sheetHeight());
+            for(int other = 0; other < glyph; other++){
+                boolean sameCell = index.glyphLeft(glyph) == index.glyphLeft(other)
+                        && index.glyphTop(glyph) == index.glyphTop(other);
+                assertTrue(!sameCell);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherFiles() throws IOException {
+        SpriteSheetIndex.read(new DataInputStream(new ByteArrayInputStream(new byte[]{'P', 'N', 'G', 0, 0, 0})));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.customviews.sprites;
+
+import com.example.customviews.core.SegmentShapes;
+import com.example.customviews.core.SevenSegment;
+import com.example.customviews.core.SpriteSheetIndex;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Genera, en el build, las hojas de sprites con los digitos del reloj para cada densidad de
+ * pantalla, junto con su {@link SpriteSheetIndex}. Usa las mismas coordenadas de
+ * {@link SegmentShapes} con las que la app crea los paths de los segmentos, asi que los digitos
+ * son identicos a los que se dibujan con paths.
+ *
+ * Uso: {@code SpriteSheetGenerator <directorio res> <celda en dp> <color activo> <color inactivo>},
+ * con los colores en formato {@code #RRGGBB} o {@code #AARRGGBB}. Escribe
+ * {@code drawable-<densidad>/clock_sprites.png} y {@code raw-<densidad>/clock_sprites_index}.
+ */
+public final class SpriteSheetGenerator {
+
+    static final String SHEET_NAME = "clock_sprites.png";
+    static final String INDEX_NAME = "clock_sprites_index";
+
+    /**
+     * Calificadores de densidad de Android y su factor respecto de mdpi
+     */
+    static final String[] DENSITIES = {"mdpi", "hdpi", "xhdpi", "xxhdpi", "xxxhdpi"};
+    static final float[] DENSITY_SCALES = {1f, 1.5f, 2f, 3f, 4f};
+
+    private SpriteSheetGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 4) {
+            System.err.println("Usage: SpriteSheetGenerator <res dir> <cell size dp> <active color> <inactive color>");
+            System.exit(1);
+        }
+        generate(new File(args[0]), Float.parseFloat(args[1]), parseColor(args[2]), parseColor(args[3]));
+    }
+
+    /**
+     * Escribe una hoja y su indice por cada densidad
+     */
+    static void generate(File resDir, float cellSizeDp, int activeColor, int inactiveColor) throws IOException {
+        for(int i = 0; i < DENSITIES.length; i++){
+            SpriteSheetIndex index = SpriteSheetIndex.forCellSize(cellSizeDp * DENSITY_SCALES[i], activeColor, inactiveColor);
+            File drawableDir = mkdirs(new File(resDir, "drawable-" + DENSITIES[i]));
+            File rawDir = mkdirs(new File(resDir, "raw-" + DENSITIES[i]));
+            if(!ImageIO.write(render(index), "png", new File(drawableDir, SHEET_NAME)))
+                throw new IOException("No PNG writer available");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(new File(rawDir, INDEX_NAME))));
+            try {
+                index.write(out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Dibuja todos los glifos del indice, con los segmentos activos e inactivos de cada digito
+     */
+    static BufferedImage render(SpriteSheetIndex index){
+        BufferedImage image = new BufferedImage(index.sheetWidth(), index.sheetHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            Color active = new Color(index.activeColor, true);
+            Color inactive = new Color(index.inactiveColor, true);
+            float[] points = new float[2 * SegmentShapes.POINTS_PER_DIGIT];
+            Path2D.Float path = new Path2D.Float();
+            for(int glyph = 0; glyph < index.glyphs; glyph++){
+                //la fila DIGIT_FIRST_ROW de la grilla queda en el borde superior del glifo
+                float left = index.glyphLeft(glyph) + index.margin;
+                float top = index.glyphTop(glyph) + index.margin - SegmentShapes.DIGIT_FIRST_ROW * index.cellSize;
+                int mask = SevenSegment.digitMask(glyph);
+                for(int segment = 0; segment < SevenSegment.SEGMENTS_PER_DIGIT; segment++){
+                    int length = SegmentShapes.fillSegment(points, 0, segment, left, top, index.cellSize);
+                    path.reset();
+                    path.moveTo(points[0], points[1]);
+                    for(int i = 2; i < length; i += 2){
+                        path.lineTo(points[i], points[i + 1]);
+                    }
+                    path.closePath();
+                    graphics.setColor(SevenSegment.isActive(mask, segment) ? active : inactive);
+                    graphics.fill(path);
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * @param color {@code #RRGGBB} o {@code #AARRGGBB}
+     * @return color ARGB
+     */
+    static int parseColor(String color){
+        if(!color.startsWith("#") || (color.length() != 7 && color.length() != 9))
+            throw new IllegalArgumentException("Invalid color: " + color);
+        long value = Long.parseLong(color.substring(1), 16);
+        if(color.length() == 7)
+            value |= 0xFF000000L;
+        return (int) value;
+    }
+
+    private static File mkdirs(File dir) throws IOException {
+        if(!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+        return dir;
+    }
+}